@@ -0,0 +1,91 @@
+package benchmark;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.mongodb.client.MongoCollection;
+import dataaccess.PostRepository;
+import dataaccess.SyncPostRepository;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import multimedia.MultimediaServerImplementation;
+import org.bson.Document;
+import post.server.PostServerImplementation;
+import preview.PreviewGenerator;
+import storage.BlobReclaimer;
+import storage.BlobStore;
+import storage.LocalBlobStore;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+// Levanta ambos servicios en un servidor in-process, con la colección en memoria y los
+// archivos en un directorio temporal, para que los benchmarks no dependan de la red ni de Mongo.
+final class BenchmarkServer {
+
+    private final Path storageRoot;
+    private final MongoCollection<Document> postsCollection;
+    private final BlobStore blobStore;
+    private final BlobReclaimer blobReclaimer;
+    private final Server server;
+    private final ManagedChannel channel;
+
+    BenchmarkServer() throws IOException {
+        String name = InProcessServerBuilder.generateName();
+        storageRoot = Files.createTempDirectory("questhub-bench");
+        postsCollection = InMemoryPostsCollection.create();
+        blobStore = new LocalBlobStore(storageRoot);
+        // La colección en memoria es síncrona; el repositorio la adapta a la interfaz asíncrona
+        PostRepository posts = new SyncPostRepository(postsCollection);
+
+        blobReclaimer = new BlobReclaimer(posts, blobStore);
+        PreviewGenerator previewGenerator = new PreviewGenerator(posts, blobStore);
+        PostServerImplementation postService = new PostServerImplementation(posts, blobStore, previewGenerator, blobReclaimer);
+
+        server = InProcessServerBuilder.forName(name)
+                .addService(postService)
+                .addService(new MultimediaServerImplementation(posts, blobStore, previewGenerator, blobReclaimer, postService::invalidateCachedPost))
+                .maxInboundMessageSize(64 * 1024 * 1024)
+                .build()
+                .start();
+
+        channel = InProcessChannelBuilder.forName(name)
+                .maxInboundMessageSize(64 * 1024 * 1024)
+                .build();
+    }
+
+    ManagedChannel channel() {
+        return channel;
+    }
+
+    MongoCollection<Document> postsCollection() {
+        return postsCollection;
+    }
+
+    BlobStore blobStore() {
+        return blobStore;
+    }
+
+    // Contenido pseudoaleatorio y reproducible, para que no se comprima ni se repita entre archivos
+    static ByteString payload(int size, long seed) {
+        byte[] data = new byte[size];
+        new Random(seed).nextBytes(data);
+        return UnsafeByteOperations.unsafeWrap(data);
+    }
+
+    void close() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        blobReclaimer.shutdown();
+
+        try (Stream<Path> files = Files.walk(storageRoot)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package benchmark;
+
+import com.google.protobuf.ByteString;
+import com.proto.post.CreatePostRequest;
+import com.proto.post.CreatePostResponse;
+import com.proto.post.MediaFile;
+import com.proto.post.PostServiceGrpc;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.TimeUnit;
+
+// createPost con N archivos adjuntos. Los archivos se repiten entre llamadas, así que después
+// de la primera iteración se mide el camino deduplicado (hash + metadatos), que no llena el disco.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class CreatePostBenchmark {
+
+    @Param({"0", "1", "4", "16"})
+    int attachments;
+
+    @Param({"262144"})
+    int attachmentSize;
+
+    private BenchmarkServer server;
+    private PostServiceGrpc.PostServiceBlockingStub stub;
+    private CreatePostRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new BenchmarkServer();
+        stub = PostServiceGrpc.newBlockingStub(server.channel());
+
+        CreatePostRequest.Builder builder = CreatePostRequest.newBuilder()
+                .setTitle("Benchmark post")
+                .setContent("Contenido del post de benchmark")
+                .setAuthorId("author")
+                .setCategoryId("category");
+
+        for (int i = 0; i < attachments; i++) {
+            ByteString data = BenchmarkServer.payload(attachmentSize, i);
+            builder.addMultimedia(MediaFile.newBuilder()
+                    .setFilename("image_" + i + ".jpg")
+                    .setContentType("image/jpeg")
+                    .setData(data));
+        }
+        request = builder.build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Benchmark
+    public CreatePostResponse createPost() {
+        return stub.createPost(request);
+    }
+}
@@ -0,0 +1,92 @@
+package benchmark;
+
+import com.proto.multimedia.GetMultimediaRequest;
+import com.proto.multimedia.GetMultimediaResponse;
+import com.proto.multimedia.MultimediaChunk;
+import com.proto.multimedia.MultimediaServiceGrpc;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import storage.StoredBlob;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// Lectura de todos los archivos de un post: respuesta única, solo metadatos y en streaming.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class GetMultimediaBenchmark {
+
+    @Param({"1", "4", "16"})
+    int items;
+
+    @Param({"65536", "1048576"})
+    int itemSize;
+
+    private BenchmarkServer server;
+    private MultimediaServiceGrpc.MultimediaServiceBlockingStub stub;
+    private GetMultimediaRequest fullRequest;
+    private GetMultimediaRequest metadataRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new BenchmarkServer();
+        stub = MultimediaServiceGrpc.newBlockingStub(server.channel());
+
+        List<Document> multimedia = new ArrayList<>();
+        for (int i = 0; i < items; i++) {
+            StoredBlob blob = server.blobStore().store(BenchmarkServer.payload(itemSize, i));
+            multimedia.add(new Document("filename", "item_" + i + ".bin")
+                    .append("original_filename", "item_" + i + ".bin")
+                    .append("content_type", "application/octet-stream")
+                    .append("file_url", blob.getKey())
+                    .append("sha256", blob.getSha256())
+                    .append("size", blob.getSize()));
+        }
+
+        ObjectId postId = new ObjectId();
+        server.postsCollection().insertOne(new Document("_id", postId)
+                .append("title", "GetMultimedia benchmark")
+                .append("multimedia", multimedia));
+
+        fullRequest = GetMultimediaRequest.newBuilder().setPostId(postId.toString()).build();
+        metadataRequest = fullRequest.toBuilder().setIncludeData(false).build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Benchmark
+    public GetMultimediaResponse getMultimedia() {
+        return stub.getMultimedia(fullRequest);
+    }
+
+    @Benchmark
+    public GetMultimediaResponse getMultimediaMetadataOnly() {
+        return stub.getMultimedia(metadataRequest);
+    }
+
+    @Benchmark
+    public long streamMultimedia() {
+        long bytes = 0;
+        Iterator<MultimediaChunk> chunks = stub.streamMultimedia(fullRequest);
+        while (chunks.hasNext()) {
+            bytes += chunks.next().getData().size();
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,232 @@
+package benchmark;
+
+import com.mongodb.MongoClientSettings;
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.FindIterable;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.InsertOneResult;
+import com.mongodb.client.result.UpdateResult;
+import org.bson.BsonDocument;
+import org.bson.BsonDocumentReader;
+import org.bson.BsonObjectId;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.codecs.DecoderContext;
+import org.bson.codecs.DocumentCodec;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Sustituto en memoria de la colección "posts" para los benchmarks. Implementa solo las
+// operaciones que usan los servicios (búsqueda por _id, insertOne, $push, $set de previews y bulkWrite) para medir el
+// costo del servidor sin la latencia de una base de datos real.
+final class InMemoryPostsCollection implements InvocationHandler {
+
+    private static final DocumentCodec CODEC = new DocumentCodec();
+
+    private final Map<Object, Document> documents = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    static MongoCollection<Document> create() {
+        return (MongoCollection<Document>) Proxy.newProxyInstance(
+                InMemoryPostsCollection.class.getClassLoader(),
+                new Class<?>[]{MongoCollection.class},
+                new InMemoryPostsCollection());
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public Object invoke(Object proxy, Method method, Object[] args) {
+        switch (method.getName()) {
+            case "insertOne":
+                return insertOne((Document) args[0]);
+            case "find":
+                return find(args != null && args.length > 0 ? (Bson) args[0] : null);
+            case "updateOne":
+                return updateOne((Bson) args[0], (Bson) args[1], args.length > 2 ? (UpdateOptions) args[2] : null);
+            case "bulkWrite":
+                return bulkWrite((List<? extends WriteModel<Document>>) args[0]);
+            case "getNamespace":
+                return new MongoNamespace("questhubDB", "posts");
+            case "countDocuments":
+                return (long) documents.size();
+            case "toString":
+                return "InMemoryPostsCollection(" + documents.size() + " documents)";
+            case "hashCode":
+                return System.identityHashCode(proxy);
+            case "equals":
+                return proxy == args[0];
+            default:
+                throw new UnsupportedOperationException("Not supported by the in-memory collection: " + method.getName());
+        }
+    }
+
+    private InsertOneResult insertOne(Document document) {
+        if (!document.containsKey("_id")) {
+            document.put("_id", new ObjectId());
+        }
+        ObjectId id = document.getObjectId("_id");
+        documents.put(id, document);
+        return InsertOneResult.acknowledged(new BsonObjectId(id));
+    }
+
+    @SuppressWarnings("unchecked")
+    private FindIterable<Document> find(Bson filter) {
+        Object id = filter != null ? idOf(filter) : null;
+        Document match = id != null ? documents.get(id) : null;
+        Document copy = null;
+        if (match != null) {
+            synchronized (match) {
+                copy = new Document(match);
+                Object multimedia = match.get("multimedia");
+                if (multimedia instanceof List) {
+                    copy.put("multimedia", new ArrayList<>((List<?>) multimedia));
+                }
+            }
+        }
+        Document result = copy;
+
+        return (FindIterable<Document>) Proxy.newProxyInstance(
+                InMemoryPostsCollection.class.getClassLoader(),
+                new Class<?>[]{FindIterable.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "first":
+                            return result;
+                        case "iterator":
+                        case "cursor":
+                            return cursor(result);
+                        case "projection":
+                        case "sort":
+                        case "limit":
+                        case "skip":
+                        case "batchSize":
+                            return proxy;
+                        default:
+                            throw new UnsupportedOperationException("Not supported by the in-memory cursor: " + method.getName());
+                    }
+                });
+    }
+
+    // Solo se buscan documentos por _id; cualquier otro filtro (rescan de previews, reclaimer) no encuentra nada
+    @SuppressWarnings("unchecked")
+    private static MongoCursor<Document> cursor(Document result) {
+        Iterator<Document> documents = result != null ? List.of(result).iterator() : Collections.emptyIterator();
+        return (MongoCursor<Document>) Proxy.newProxyInstance(
+                InMemoryPostsCollection.class.getClassLoader(),
+                new Class<?>[]{MongoCursor.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "hasNext":
+                            return documents.hasNext();
+                        case "next":
+                            return documents.next();
+                        case "close":
+                            return null;
+                        default:
+                            throw new UnsupportedOperationException("Not supported by the in-memory cursor: " + method.getName());
+                    }
+                });
+    }
+
+    @SuppressWarnings("unchecked")
+    private UpdateResult updateOne(Bson filter, Bson update, UpdateOptions options) {
+        Document document = documents.get(idOf(filter));
+        if (document == null) {
+            return UpdateResult.acknowledged(0, 0L, null);
+        }
+
+        BsonDocument operations = toBson(update);
+        if (operations.containsKey("$set")) {
+            setInArray(document, operations.getDocument("$set"), options, false);
+        }
+        if (operations.containsKey("$unset")) {
+            setInArray(document, operations.getDocument("$unset"), options, true);
+        }
+        BsonDocument push = operations.getDocument("$push", new BsonDocument());
+        synchronized (document) {
+            for (Map.Entry<String, BsonValue> entry : push.entrySet()) {
+                List<Object> list = (List<Object>) document.computeIfAbsent(entry.getKey(), k -> new ArrayList<>());
+                BsonValue value = entry.getValue();
+                if (value.isDocument() && value.asDocument().containsKey("$each")) {
+                    list.addAll((List<Object>) decode(value.asDocument().get("$each")));
+                } else {
+                    list.add(decode(value));
+                }
+            }
+        }
+        return UpdateResult.acknowledged(1, 1L, null);
+    }
+
+    // Solo la forma que usan las previews: "lista.$[m].campo" con un arrayFilter de igualdad sobre m,
+    // para $set o $unset
+    @SuppressWarnings("unchecked")
+    private static void setInArray(Document document, BsonDocument set, UpdateOptions options, boolean unset) {
+        BsonDocument arrayFilter = toBson(options.getArrayFilters().get(0));
+        Map.Entry<String, BsonValue> condition = arrayFilter.entrySet().iterator().next();
+        String matchField = condition.getKey().substring(condition.getKey().indexOf('.') + 1);
+        Object matchValue = decode(condition.getValue());
+
+        for (Map.Entry<String, BsonValue> entry : set.entrySet()) {
+            String[] path = entry.getKey().split("\\.\\$\\[[a-z]+\\]\\.");
+            synchronized (document) {
+                List<Object> list = (List<Object>) document.get(path[0]);
+                if (list == null) continue;
+                for (int i = 0; i < list.size(); i++) {
+                    Document element = (Document) list.get(i);
+                    if (matchValue.equals(element.get(matchField))) {
+                        // Se reemplaza el elemento para no mutar copias ya entregadas por find
+                        Document replacement = new Document(element);
+                        if (unset) {
+                            replacement.remove(path[1]);
+                        } else {
+                            replacement.put(path[1], decode(entry.getValue()));
+                        }
+                        list.set(i, replacement);
+                    }
+                }
+            }
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private BulkWriteResult bulkWrite(List<? extends WriteModel<Document>> models) {
+        int matched = 0;
+        for (WriteModel<Document> model : models) {
+            if (!(model instanceof UpdateOneModel)) {
+                throw new UnsupportedOperationException("Not supported by the in-memory collection: " + model);
+            }
+            UpdateOneModel<Document> update = (UpdateOneModel<Document>) model;
+            matched += (int) updateOne(update.getFilter(), update.getUpdate(), update.getOptions()).getMatchedCount();
+        }
+        return BulkWriteResult.acknowledged(0, matched, 0, matched, List.of(), List.of());
+    }
+
+    private static Object idOf(Bson filter) {
+        BsonValue id = toBson(filter).get("_id");
+        return id != null && id.isObjectId() ? id.asObjectId().getValue() : null;
+    }
+
+    private static BsonDocument toBson(Bson bson) {
+        return bson.toBsonDocument(Document.class, MongoClientSettings.getDefaultCodecRegistry());
+    }
+
+    private static Object decode(BsonValue value) {
+        BsonDocument wrapper = new BsonDocument("v", value);
+        return CODEC.decode(new BsonDocumentReader(wrapper), DecoderContext.builder().build()).get("v");
+    }
+}
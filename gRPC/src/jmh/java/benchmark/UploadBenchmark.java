@@ -0,0 +1,89 @@
+package benchmark;
+
+import com.google.protobuf.ByteString;
+import com.proto.multimedia.MultimediaServiceGrpc;
+import com.proto.multimedia.UploadRequest;
+import com.proto.multimedia.UploadResponse;
+import io.grpc.stub.StreamObserver;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+// Upload en streaming con distintos tamaños de archivo y de chunk. Cada llamada escribe el
+// archivo completo a un temporal y lo hashea; como el contenido se repite, el blob final se deduplica.
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class UploadBenchmark {
+
+    @Param({"65536", "1048576", "8388608"})
+    int fileSize;
+
+    @Param({"16384", "65536", "1048576"})
+    int chunkSize;
+
+    private BenchmarkServer server;
+    private MultimediaServiceGrpc.MultimediaServiceStub stub;
+    private String postId;
+    private ByteString data;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        server = new BenchmarkServer();
+        stub = MultimediaServiceGrpc.newStub(server.channel());
+        data = BenchmarkServer.payload(fileSize, fileSize);
+
+        postId = new ObjectId().toString();
+        server.postsCollection().insertOne(new Document("_id", new ObjectId(postId)).append("title", "Upload benchmark"));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        server.close();
+    }
+
+    @Benchmark
+    public UploadResponse upload() throws Exception {
+        CompletableFuture<UploadResponse> result = new CompletableFuture<>();
+
+        StreamObserver<UploadRequest> requestObserver = stub.upload(new StreamObserver<UploadResponse>() {
+            @Override
+            public void onNext(UploadResponse response) {
+                result.complete(response);
+            }
+
+            @Override
+            public void onError(Throwable t) {
+                result.completeExceptionally(t);
+            }
+
+            @Override
+            public void onCompleted() {
+            }
+        });
+
+        for (int offset = 0; offset < fileSize; offset += chunkSize) {
+            requestObserver.onNext(UploadRequest.newBuilder()
+                    .setPostId(postId)
+                    .setFilename("benchmark.bin")
+                    .setContentType("application/octet-stream")
+                    .setData(data.substring(offset, Math.min(fileSize, offset + chunkSize)))
+                    .build());
+        }
+        requestObserver.onCompleted();
+
+        return result.get(1, TimeUnit.MINUTES);
+    }
+}
@@ -0,0 +1,32 @@
+package config;
+
+// Lee la configuración de una propiedad del sistema (-Dquesthub.mongo.uri=...) o de la
+// variable de entorno equivalente (QUESTHUB_MONGO_URI), en ese orden.
+public final class Settings {
+
+    private Settings() {
+    }
+
+    public static String get(String key, String defaultValue) {
+        String value = System.getProperty(key);
+        if (value == null) {
+            value = System.getenv(key.toUpperCase().replace('.', '_').replace('-', '_'));
+        }
+        return value != null && !value.isBlank() ? value.trim() : defaultValue;
+    }
+
+    public static int getInt(String key, int defaultValue) {
+        String value = get(key, null);
+        return value != null ? Integer.parseInt(value) : defaultValue;
+    }
+
+    public static long getLong(String key, long defaultValue) {
+        String value = get(key, null);
+        return value != null ? Long.parseLong(value) : defaultValue;
+    }
+
+    public static boolean getBoolean(String key, boolean defaultValue) {
+        String value = get(key, null);
+        return value != null ? Boolean.parseBoolean(value) : defaultValue;
+    }
+}
@@ -1,27 +1,114 @@
 package dataaccess;
 
+import com.mongodb.ConnectionString;
+import com.mongodb.MongoClientSettings;
 import com.mongodb.client.MongoClient;
 import com.mongodb.client.MongoClients;
 import com.mongodb.client.MongoDatabase;
-//import com.mongodb.MongoClientURI;
+import config.Settings;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Cliente de MongoDB compartido por todo el proceso. Se crea una sola vez, la primera vez que
+// se pide la base de datos, y su pool de conexiones se reutiliza en todas las llamadas.
 public class MongoConnection {
-    private static MongoClient mongoClient;
-    private static MongoDatabase database;
+    private static final MongoPoolStats poolStats = new MongoPoolStats();
+    private static volatile MongoClient mongoClient;
+    private static volatile MongoDatabase database;
+    private static volatile com.mongodb.reactivestreams.client.MongoClient reactiveClient;
+    private static volatile PostRepository postRepository;
+    private static ExecutorService callbackExecutor;
 
-    public static void connect() {
-        String uri = "mongodb://localhost:27017";
-        mongoClient = MongoClients.create(uri);
-        database = mongoClient.getDatabase("questhubDB");
+    private MongoConnection() {
     }
 
     public static MongoDatabase getDatabase() {
-        return database;
+        MongoDatabase db = database;
+        if (db == null) {
+            synchronized (MongoConnection.class) {
+                db = database;
+                if (db == null) {
+                    mongoClient = MongoClients.create(buildSettings());
+                    db = mongoClient.getDatabase(Settings.get("questhub.mongo.database", "questhubDB"));
+                    database = db;
+                }
+            }
+        }
+        return db;
+    }
+
+    // Con questhub.mongo.async=true (por defecto) se usa el driver reactivo; con false, el síncrono.
+    // Así se puede comparar el rendimiento de ambos con la misma carga.
+    public static PostRepository getPostRepository() {
+        PostRepository repository = postRepository;
+        if (repository == null) {
+            synchronized (MongoConnection.class) {
+                repository = postRepository;
+                if (repository == null) {
+                    repository = Settings.getBoolean("questhub.mongo.async", true)
+                            ? createReactiveRepository()
+                            : new SyncPostRepository(getDatabase().getCollection("posts"));
+                    postRepository = repository;
+                }
+            }
+        }
+        return repository;
+    }
+
+    private static PostRepository createReactiveRepository() {
+        reactiveClient = com.mongodb.reactivestreams.client.MongoClients.create(buildSettings());
+        AtomicInteger counter = new AtomicInteger();
+        callbackExecutor = Executors.newFixedThreadPool(
+                Settings.getInt("questhub.mongo.async.callback-threads", Runtime.getRuntime().availableProcessors() * 2),
+                r -> {
+                    Thread thread = new Thread(r, "mongo-callback-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+
+        return new ReactivePostRepository(
+                reactiveClient.getDatabase(Settings.get("questhub.mongo.database", "questhubDB")).getCollection("posts"),
+                callbackExecutor);
+    }
+
+    static MongoClientSettings buildSettings() {
+        String uri = Settings.get("questhub.mongo.uri", "mongodb://localhost:27017");
+
+        return MongoClientSettings.builder()
+                .applyConnectionString(new ConnectionString(uri))
+                .applyToConnectionPoolSettings(pool -> pool
+                        .maxSize(Settings.getInt("questhub.mongo.pool.max-size", 100))
+                        .minSize(Settings.getInt("questhub.mongo.pool.min-size", 0))
+                        .maxConnecting(Settings.getInt("questhub.mongo.pool.max-connecting", 2))
+                        .maxWaitTime(Settings.getLong("questhub.mongo.pool.max-wait-ms", 2000), TimeUnit.MILLISECONDS)
+                        .maxConnectionIdleTime(Settings.getLong("questhub.mongo.pool.max-idle-ms", 60000), TimeUnit.MILLISECONDS)
+                        .addConnectionPoolListener(poolStats))
+                .applyToSocketSettings(socket -> socket
+                        .connectTimeout((int) Settings.getLong("questhub.mongo.connect-timeout-ms", 5000), TimeUnit.MILLISECONDS)
+                        .readTimeout((int) Settings.getLong("questhub.mongo.read-timeout-ms", 0), TimeUnit.MILLISECONDS))
+                .applyToClusterSettings(cluster -> cluster
+                        .serverSelectionTimeout(Settings.getLong("questhub.mongo.server-selection-timeout-ms", 5000), TimeUnit.MILLISECONDS))
+                .build();
     }
 
-    public static void close() {
+    public static MongoPoolStats getPoolStats() {
+        return poolStats;
+    }
+
+    public static synchronized void close() {
         if (mongoClient != null) {
             mongoClient.close();
+            mongoClient = null;
+            database = null;
+        }
+        if (reactiveClient != null) {
+            reactiveClient.close();
+            reactiveClient = null;
+            callbackExecutor.shutdown();
         }
+        postRepository = null;
     }
-}
\ No newline at end of file
+}
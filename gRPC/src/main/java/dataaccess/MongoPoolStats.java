@@ -0,0 +1,89 @@
+package dataaccess;
+
+import com.mongodb.event.ConnectionCheckOutFailedEvent;
+import com.mongodb.event.ConnectionCheckedInEvent;
+import com.mongodb.event.ConnectionCheckedOutEvent;
+import com.mongodb.event.ConnectionClosedEvent;
+import com.mongodb.event.ConnectionCreatedEvent;
+import com.mongodb.event.ConnectionPoolListener;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+
+// Estadísticas del pool de conexiones para dimensionarlo según el tráfico real.
+public class MongoPoolStats implements ConnectionPoolListener {
+
+    private final AtomicInteger openConnections = new AtomicInteger();
+    private final AtomicInteger checkedOut = new AtomicInteger();
+    private final AtomicLong checkouts = new AtomicLong();
+    private final AtomicLong checkoutFailures = new AtomicLong();
+    private final AtomicLong totalWaitMicros = new AtomicLong();
+    private final LongAccumulator maxWaitMicros = new LongAccumulator(Math::max, 0);
+
+    @Override
+    public void connectionCreated(ConnectionCreatedEvent event) {
+        openConnections.incrementAndGet();
+    }
+
+    @Override
+    public void connectionClosed(ConnectionClosedEvent event) {
+        openConnections.decrementAndGet();
+    }
+
+    @Override
+    public void connectionCheckedOut(ConnectionCheckedOutEvent event) {
+        checkedOut.incrementAndGet();
+        checkouts.incrementAndGet();
+        recordWait(event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void connectionCheckOutFailed(ConnectionCheckOutFailedEvent event) {
+        checkoutFailures.incrementAndGet();
+        recordWait(event.getElapsedTime(TimeUnit.MICROSECONDS));
+    }
+
+    @Override
+    public void connectionCheckedIn(ConnectionCheckedInEvent event) {
+        checkedOut.decrementAndGet();
+    }
+
+    private void recordWait(long micros) {
+        totalWaitMicros.addAndGet(micros);
+        maxWaitMicros.accumulate(micros);
+    }
+
+    public int getOpenConnections() {
+        return openConnections.get();
+    }
+
+    public int getCheckedOutConnections() {
+        return checkedOut.get();
+    }
+
+    public long getCheckouts() {
+        return checkouts.get();
+    }
+
+    public long getCheckoutFailures() {
+        return checkoutFailures.get();
+    }
+
+    public double getAverageWaitMicros() {
+        long attempts = checkouts.get() + checkoutFailures.get();
+        return attempts == 0 ? 0 : (double) totalWaitMicros.get() / attempts;
+    }
+
+    public long getMaxWaitMicros() {
+        return maxWaitMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("open=%d checkedOut=%d checkouts=%d failures=%d avgWait=%.1fus maxWait=%dus",
+                getOpenConnections(), getCheckedOutConnections(), getCheckouts(), getCheckoutFailures(),
+                getAverageWaitMicros(), getMaxWaitMicros());
+    }
+}
@@ -0,0 +1,41 @@
+package dataaccess;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+
+// Acceso a la colección "posts". Todas las operaciones regresan un CompletableFuture para que los
+// servicios encadenen la respuesta sin esperar a la base de datos. Con el driver síncrono los futures
+// ya vienen completos; con el reactivo se completan en un hilo propio, nunca en uno de gRPC.
+public interface PostRepository {
+
+    // El post con ese _id (solo los campos de la proyección, si hay) o null
+    CompletableFuture<Document> findById(ObjectId id, Bson projection);
+
+    // Entrega los documentos al consumer en orden conforme llegan; si regresa false se deja de leer
+    CompletableFuture<Void> find(Bson filter, Bson projection, Bson sort, int limit, int batchSize,
+                                 Predicate<Document> consumer);
+
+    CompletableFuture<Void> insert(Document document);
+
+    // Regresa el documento ya actualizado, o null si no existe
+    CompletableFuture<Document> findOneAndUpdate(ObjectId id, Bson update, Bson projection);
+
+    CompletableFuture<Long> updateOne(Bson filter, Bson update, UpdateOptions options);
+
+    // Regresa el documento borrado, o null si no existía
+    CompletableFuture<Document> findOneAndDelete(ObjectId id, Bson projection);
+
+    CompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> models, BulkWriteOptions options);
+
+    CompletableFuture<Void> createIndexes(List<IndexModel> indexes);
+}
@@ -0,0 +1,183 @@
+package dataaccess;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.mongodb.client.result.UpdateResult;
+import com.mongodb.reactivestreams.client.MongoCollection;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.reactivestreams.Publisher;
+import org.reactivestreams.Subscriber;
+import org.reactivestreams.Subscription;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Predicate;
+
+// Implementación con el driver reactivo: ninguna operación bloquea al hilo que la llama. Los
+// futures se completan en callbackExecutor para que lo que se encadene después (lecturas de disco,
+// respuestas gRPC) no corra en los hilos de I/O del driver.
+public class ReactivePostRepository implements PostRepository {
+
+    private final MongoCollection<Document> collection;
+    private final Executor callbackExecutor;
+
+    public ReactivePostRepository(MongoCollection<Document> collection, Executor callbackExecutor) {
+        this.collection = collection;
+        this.callbackExecutor = callbackExecutor;
+    }
+
+    @Override
+    public CompletableFuture<Document> findById(ObjectId id, Bson projection) {
+        return last(collection.find(Filters.eq("_id", id)).projection(projection).first());
+    }
+
+    @Override
+    public CompletableFuture<Void> find(Bson filter, Bson projection, Bson sort, int limit, int batchSize,
+                                        Predicate<Document> consumer) {
+        CompletableFuture<Void> result = new CompletableFuture<>();
+        collection.find(filter)
+                .projection(projection)
+                .sort(sort)
+                .limit(limit)
+                .batchSize(batchSize)
+                .subscribe(new StreamingSubscriber(batchSize, consumer, result));
+        return result;
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(Document document) {
+        return last(collection.insertOne(document)).thenApply(ignored -> null);
+    }
+
+    @Override
+    public CompletableFuture<Document> findOneAndUpdate(ObjectId id, Bson update, Bson projection) {
+        return last(collection.findOneAndUpdate(Filters.eq("_id", id), update,
+                new FindOneAndUpdateOptions().projection(projection).returnDocument(ReturnDocument.AFTER)));
+    }
+
+    @Override
+    public CompletableFuture<Long> updateOne(Bson filter, Bson update, UpdateOptions options) {
+        return last(collection.updateOne(filter, update, options)).thenApply(UpdateResult::getModifiedCount);
+    }
+
+    @Override
+    public CompletableFuture<Document> findOneAndDelete(ObjectId id, Bson projection) {
+        return last(collection.findOneAndDelete(Filters.eq("_id", id), new FindOneAndDeleteOptions().projection(projection)));
+    }
+
+    @Override
+    public CompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> models, BulkWriteOptions options) {
+        return last(collection.bulkWrite(models, options));
+    }
+
+    @Override
+    public CompletableFuture<Void> createIndexes(List<IndexModel> indexes) {
+        return last(collection.createIndexes(indexes)).thenApply(ignored -> null);
+    }
+
+    // Se queda con el último valor publicado (o null si no hubo ninguno) y completa al terminar
+    private <T> CompletableFuture<T> last(Publisher<T> publisher) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        publisher.subscribe(new Subscriber<T>() {
+            private T value;
+
+            @Override
+            public void onSubscribe(Subscription subscription) {
+                subscription.request(Long.MAX_VALUE);
+            }
+
+            @Override
+            public void onNext(T item) {
+                value = item;
+            }
+
+            @Override
+            public void onError(Throwable error) {
+                callbackExecutor.execute(() -> result.completeExceptionally(error));
+            }
+
+            @Override
+            public void onComplete() {
+                T completed = value;
+                callbackExecutor.execute(() -> result.complete(completed));
+            }
+        });
+        return result;
+    }
+
+    // Pide los documentos de batchSize en batchSize; el consumer corre en el hilo del driver y
+    // debe ser rápido (por ejemplo, encolar un mensaje de gRPC)
+    private class StreamingSubscriber implements Subscriber<Document> {
+        private final int batchSize;
+        private final Predicate<Document> consumer;
+        private final CompletableFuture<Void> result;
+        private Subscription subscription;
+        private int pending;
+        private boolean stopped;
+
+        StreamingSubscriber(int batchSize, Predicate<Document> consumer, CompletableFuture<Void> result) {
+            this.batchSize = Math.max(batchSize, 1);
+            this.consumer = consumer;
+            this.result = result;
+        }
+
+        @Override
+        public void onSubscribe(Subscription subscription) {
+            this.subscription = subscription;
+            pending = batchSize;
+            subscription.request(batchSize);
+        }
+
+        @Override
+        public void onNext(Document document) {
+            if (stopped) return;
+
+            boolean more;
+            try {
+                more = consumer.test(document);
+            } catch (RuntimeException e) {
+                stop();
+                callbackExecutor.execute(() -> result.completeExceptionally(e));
+                return;
+            }
+
+            if (!more) {
+                stop();
+                callbackExecutor.execute(() -> result.complete(null));
+                return;
+            }
+
+            if (--pending == 0) {
+                pending = batchSize;
+                subscription.request(batchSize);
+            }
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            if (stopped) return;
+            callbackExecutor.execute(() -> result.completeExceptionally(error));
+        }
+
+        @Override
+        public void onComplete() {
+            if (stopped) return;
+            callbackExecutor.execute(() -> result.complete(null));
+        }
+
+        private void stop() {
+            stopped = true;
+            subscription.cancel();
+        }
+    }
+}
@@ -0,0 +1,100 @@
+package dataaccess;
+
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.MongoCursor;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.FindOneAndDeleteOptions;
+import com.mongodb.client.model.FindOneAndUpdateOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.ReturnDocument;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+// Implementación con el driver síncrono: cada operación bloquea al hilo que la llama y regresa
+// un future ya completo. Es el modo de referencia para comparar contra el reactivo.
+public class SyncPostRepository implements PostRepository {
+
+    private final MongoCollection<Document> collection;
+
+    public SyncPostRepository(MongoCollection<Document> collection) {
+        this.collection = collection;
+    }
+
+    @Override
+    public CompletableFuture<Document> findById(ObjectId id, Bson projection) {
+        return run(() -> collection.find(Filters.eq("_id", id)).projection(projection).first());
+    }
+
+    @Override
+    public CompletableFuture<Void> find(Bson filter, Bson projection, Bson sort, int limit, int batchSize,
+                                        Predicate<Document> consumer) {
+        return run(() -> {
+            try (MongoCursor<Document> cursor = collection.find(filter)
+                    .projection(projection)
+                    .sort(sort)
+                    .limit(limit)
+                    .batchSize(batchSize)
+                    .iterator()) {
+                while (cursor.hasNext()) {
+                    if (!consumer.test(cursor.next())) break;
+                }
+            }
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> insert(Document document) {
+        return run(() -> {
+            collection.insertOne(document);
+            return null;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Document> findOneAndUpdate(ObjectId id, Bson update, Bson projection) {
+        return run(() -> collection.findOneAndUpdate(Filters.eq("_id", id), update,
+                new FindOneAndUpdateOptions().projection(projection).returnDocument(ReturnDocument.AFTER)));
+    }
+
+    @Override
+    public CompletableFuture<Long> updateOne(Bson filter, Bson update, UpdateOptions options) {
+        return run(() -> collection.updateOne(filter, update, options).getModifiedCount());
+    }
+
+    @Override
+    public CompletableFuture<Document> findOneAndDelete(ObjectId id, Bson projection) {
+        return run(() -> collection.findOneAndDelete(Filters.eq("_id", id), new FindOneAndDeleteOptions().projection(projection)));
+    }
+
+    @Override
+    public CompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> models, BulkWriteOptions options) {
+        return run(() -> collection.bulkWrite(models, options));
+    }
+
+    @Override
+    public CompletableFuture<Void> createIndexes(List<IndexModel> indexes) {
+        return run(() -> {
+            collection.createIndexes(indexes);
+            return null;
+        });
+    }
+
+    private static <T> CompletableFuture<T> run(Supplier<T> operation) {
+        try {
+            return CompletableFuture.completedFuture(operation.get());
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+}
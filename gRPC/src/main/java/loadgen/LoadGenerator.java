@@ -0,0 +1,307 @@
+package loadgen;
+
+import config.Settings;
+import io.grpc.Channel;
+import io.grpc.ManagedChannel;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+// Generador de carga contra un servidor en marcha. Mezcla createPost, upload y getMultimedia
+// con datos sintéticos y reporta throughput, errores y percentiles de latencia.
+//
+// Dos modos (questhub.loadgen.mode):
+//   rate         carga abierta: las operaciones se lanzan a questhub.loadgen.rate por segundo
+//                sin importar cuánto tarde el servidor, como llegan los usuarios reales
+//   concurrency  carga cerrada: questhub.loadgen.concurrency operaciones en vuelo; cada una
+//                lanza la siguiente al terminar (opcionalmente a un ritmo fijo con rate)
+//
+// La latencia se mide desde el inicio programado de cada operación, no desde que se envió: si
+// el servidor se detiene, las operaciones que debieron salir durante la pausa cuentan su espera.
+//
+// Configuración con -D o variables de entorno, por ejemplo:
+//   ./gradlew loadgen -Dquesthub.loadgen.rate=200 -Dquesthub.loadgen.mix=create:10,upload:20,get:70
+public class LoadGenerator {
+
+    private final List<ManagedChannel> channels = new ArrayList<>();
+    private final Workload workload;
+    private final Operation.Mix mix;
+    private final Map<Operation, OperationStats> stats = new EnumMap<>(Operation.class);
+    private final ScheduledExecutorService scheduler = Executors.newScheduledThreadPool(2, r -> {
+        Thread thread = new Thread(r, "loadgen-scheduler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final String mode;
+    private final double rate;
+    private final int concurrency;
+    private final long durationNanos;
+    private final long warmupNanos;
+    private final long reportNanos;
+    private final int seedPosts;
+    private final Semaphore inFlight;
+    private final AtomicLong outstanding = new AtomicLong();
+
+    private volatile long measureStart;
+    private volatile long end;
+
+    public LoadGenerator() {
+        String target = Settings.get("questhub.loadgen.target", "localhost:50051");
+        int channelCount = Settings.getInt("questhub.loadgen.channels", 1);
+        for (int i = 0; i < channelCount; i++) {
+            channels.add(ManagedChannelBuilder.forTarget(target)
+                    .usePlaintext()
+                    .maxInboundMessageSize(64 * 1024 * 1024)
+                    .build());
+        }
+
+        int maxMediaBytes = Settings.getInt("questhub.loadgen.max-media-bytes", 8 * 1024 * 1024);
+        workload = new Workload(new ArrayList<Channel>(channels),
+                SizeDistribution.parse(Settings.get("questhub.loadgen.post-size", "lognormal:1500:0.8"), 1, 64 * 1024),
+                SizeDistribution.parse(Settings.get("questhub.loadgen.media-size", "lognormal:262144:1.0"), 1, maxMediaBytes),
+                Settings.getInt("questhub.loadgen.media-per-post", 1),
+                Settings.getInt("questhub.loadgen.chunk-bytes", 64 * 1024),
+                Settings.getBoolean("questhub.loadgen.unique-media", true),
+                Settings.getBoolean("questhub.loadgen.get-include-data", true),
+                Settings.getLong("questhub.loadgen.deadline-ms", 30000),
+                Settings.getInt("questhub.loadgen.post-pool", 1000));
+
+        mix = Operation.Mix.parse(Settings.get("questhub.loadgen.mix", "create:20,upload:20,get:60"));
+        for (Operation operation : Operation.values()) {
+            stats.put(operation, new OperationStats());
+        }
+
+        mode = Settings.get("questhub.loadgen.mode", "rate").toLowerCase(Locale.ROOT);
+        rate = Double.parseDouble(Settings.get("questhub.loadgen.rate", "rate".equals(mode) ? "100" : "0"));
+        concurrency = Settings.getInt("questhub.loadgen.concurrency", 16);
+        durationNanos = TimeUnit.SECONDS.toNanos(Settings.getLong("questhub.loadgen.duration-seconds", 60));
+        warmupNanos = TimeUnit.SECONDS.toNanos(Settings.getLong("questhub.loadgen.warmup-seconds", 10));
+        reportNanos = TimeUnit.SECONDS.toNanos(Settings.getLong("questhub.loadgen.report-seconds", 5));
+        seedPosts = Settings.getInt("questhub.loadgen.seed-posts", 20);
+        // Tope de operaciones en vuelo en carga abierta, para no agotar la memoria si el servidor
+        // se satura; la espera por un lugar se mide igual porque cuenta desde el inicio programado
+        inFlight = new Semaphore(Settings.getInt("questhub.loadgen.max-in-flight", 10000));
+
+        if (!"rate".equals(mode) && !"concurrency".equals(mode)) {
+            throw new IllegalArgumentException("questhub.loadgen.mode must be rate or concurrency: " + mode);
+        }
+        if ("rate".equals(mode) && rate <= 0) {
+            throw new IllegalArgumentException("questhub.loadgen.rate must be positive in rate mode");
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        LoadGenerator generator = new LoadGenerator();
+        try {
+            generator.run();
+        } finally {
+            generator.close();
+        }
+    }
+
+    void run() throws InterruptedException {
+        System.out.println("Carga: modo=" + mode + (rate > 0 ? " rate=" + rate + "/s" : "")
+                + ("concurrency".equals(mode) ? " concurrency=" + concurrency : "") + " mix=" + mix);
+
+        seed();
+
+        long start = System.nanoTime();
+        measureStart = start + warmupNanos;
+        end = measureStart + durationNanos;
+
+        Thread reporter = new Thread(this::report, "loadgen-reporter");
+        reporter.setDaemon(true);
+        reporter.start();
+
+        if ("rate".equals(mode)) {
+            runOpenLoop(start);
+        } else {
+            runClosedLoop(start);
+        }
+
+        // Se espera a que terminen las operaciones en vuelo antes del resumen
+        long drainDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (outstanding.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(50);
+        }
+        reporter.interrupt();
+        reporter.join();
+
+        printSummary();
+    }
+
+    // Posts iniciales para que las subidas y las lecturas tengan sobre qué trabajar
+    private void seed() {
+        List<CompletableFuture<Long>> created = new ArrayList<>();
+        for (int i = 0; i < seedPosts; i++) {
+            created.add(workload.createPost());
+        }
+        for (CompletableFuture<Long> future : created) {
+            try {
+                future.join();
+            } catch (RuntimeException e) {
+                System.err.println("Error creando post inicial: " + Status.fromThrowable(e.getCause()).getCode());
+            }
+        }
+        System.out.println("Posts iniciales creados: " + workload.postsCreated());
+    }
+
+    // Carga abierta: cada operación tiene un inicio programado fijo, start + i / rate
+    private void runOpenLoop(long start) throws InterruptedException {
+        double intervalNanos = TimeUnit.SECONDS.toNanos(1) / rate;
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * intervalNanos);
+            if (intended >= end) return;
+
+            long wait = intended - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            inFlight.acquire();
+            issue(mix.next(), intended, 0, inFlight::release);
+        }
+    }
+
+    // Carga cerrada: cada lugar lanza su siguiente operación al terminar la anterior
+    private void runClosedLoop(long start) throws InterruptedException {
+        long laneInterval = rate > 0 ? (long) (TimeUnit.SECONDS.toNanos(1) * concurrency / rate) : 0;
+        for (int lane = 0; lane < concurrency; lane++) {
+            // Los lugares con ritmo se escalonan para no arrancar todos a la vez
+            long first = start + (laneInterval > 0 ? laneInterval * lane / concurrency : 0);
+            scheduleLane(first, laneInterval);
+        }
+
+        long wait = end - System.nanoTime();
+        if (wait > 0) TimeUnit.NANOSECONDS.sleep(wait);
+    }
+
+    private void scheduleLane(long intended, long laneInterval) {
+        if (intended >= end) return;
+
+        long delay = intended - System.nanoTime();
+        scheduler.schedule(() -> {
+            Operation operation = mix.next();
+            // Sin ritmo no hay inicio programado; se corrige con la latencia promedio como intervalo esperado
+            long expectedInterval = laneInterval > 0 ? 0 : stats.get(operation).meanLatencyNanos();
+            long start = laneInterval > 0 ? intended : System.nanoTime();
+            long next = laneInterval > 0 ? intended + laneInterval : 0;
+
+            issue(operation, start, expectedInterval,
+                    () -> scheduleLane(laneInterval > 0 ? next : System.nanoTime(), laneInterval));
+        }, Math.max(delay, 0), TimeUnit.NANOSECONDS);
+    }
+
+    private void issue(Operation operation, long intended, long expectedInterval, Runnable onDone) {
+        outstanding.incrementAndGet();
+        long sent = System.nanoTime();
+        CompletableFuture<Long> result;
+        try {
+            result = workload.execute(operation);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+
+        result.whenComplete((bytes, error) -> {
+            long now = System.nanoTime();
+            // Lo que se programó durante el calentamiento no se mide
+            if (intended >= measureStart) {
+                OperationStats operationStats = stats.get(operation);
+                if (error != null) {
+                    operationStats.recordError(error);
+                } else {
+                    operationStats.recordSuccess(intended, sent, now, expectedInterval, bytes);
+                }
+            }
+            outstanding.decrementAndGet();
+            onDone.run();
+        });
+    }
+
+    // Una línea por operación en cada intervalo; durante el calentamiento no hay nada que reportar
+    private void report() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                TimeUnit.NANOSECONDS.sleep(reportNanos);
+
+                double seconds = reportNanos / 1e9;
+                for (Operation operation : Operation.values()) {
+                    OperationStats operationStats = stats.get(operation);
+                    operationStats.roll();
+                    Histogram interval = operationStats.interval();
+                    if (interval.getTotalCount() == 0 && operationStats.intervalErrors() == 0) continue;
+
+                    System.out.printf(Locale.ROOT, "%-8s %8.1f op/s  errores=%d  p50=%.2fms p99=%.2fms max=%.2fms  en vuelo=%d%n",
+                            operation.key(), interval.getTotalCount() / seconds, operationStats.intervalErrors(),
+                            millis(interval.getValueAtPercentile(50)), millis(interval.getValueAtPercentile(99)),
+                            millis(interval.getMaxValue()), outstanding.get());
+                }
+            }
+        } catch (InterruptedException e) {
+            // Fin de la prueba
+        }
+    }
+
+    private void printSummary() {
+        double seconds = durationNanos / 1e9;
+        System.out.println();
+        System.out.printf(Locale.ROOT, "Resumen (%.0f s medidos, latencias en ms, corregidas por coordinated omission)%n", seconds);
+
+        long totalOperations = 0;
+        long totalErrors = 0;
+        for (Operation operation : Operation.values()) {
+            OperationStats operationStats = stats.get(operation);
+            operationStats.roll();
+            Histogram total = operationStats.total();
+            long count = total.getTotalCount();
+            long errors = operationStats.errorCount();
+            // En carga cerrada sin ritmo la corrección agrega muestras; las operaciones reales son las no corregidas
+            long completed = operationStats.totalUncorrected().getTotalCount();
+            if (completed == 0 && errors == 0) continue;
+
+            totalOperations += completed + errors;
+            totalErrors += errors;
+
+            System.out.printf(Locale.ROOT, "%s: %d ok, %d errores (%.2f%%), %.1f op/s, %.2f MB/s%n",
+                    operation.key(), completed, errors, 100.0 * errors / Math.max(completed + errors, 1),
+                    completed / seconds, operationStats.bytes() / seconds / (1024 * 1024));
+            if (count > 0) {
+                System.out.printf(Locale.ROOT, "  p50=%.2f p90=%.2f p99=%.2f p99.9=%.2f p99.99=%.2f max=%.2f%n",
+                        millis(total.getValueAtPercentile(50)), millis(total.getValueAtPercentile(90)),
+                        millis(total.getValueAtPercentile(99)), millis(total.getValueAtPercentile(99.9)),
+                        millis(total.getValueAtPercentile(99.99)), millis(total.getMaxValue()));
+                Histogram raw = operationStats.totalUncorrected();
+                System.out.printf(Locale.ROOT, "  sin corregir: p50=%.2f p99=%.2f p99.9=%.2f max=%.2f%n",
+                        millis(raw.getValueAtPercentile(50)), millis(raw.getValueAtPercentile(99)),
+                        millis(raw.getValueAtPercentile(99.9)), millis(raw.getMaxValue()));
+            }
+            operationStats.errors().forEach((code, n) -> System.out.println("  " + code + ": " + n));
+        }
+
+        System.out.printf(Locale.ROOT, "Total: %.1f op/s, %.2f%% errores%n",
+                totalOperations / seconds, 100.0 * totalErrors / Math.max(totalOperations, 1));
+    }
+
+    private static double millis(long micros) {
+        return micros / 1000.0;
+    }
+
+    void close() throws InterruptedException {
+        scheduler.shutdownNow();
+        for (ManagedChannel channel : channels) {
+            channel.shutdown().awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+}
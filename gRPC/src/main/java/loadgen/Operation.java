@@ -0,0 +1,85 @@
+package loadgen;
+
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Operaciones que genera la carga y su proporción, escrita como "create:20,upload:30,get:50"
+enum Operation {
+    CREATE_POST("create"),
+    UPLOAD("upload"),
+    GET_MULTIMEDIA("get");
+
+    private final String key;
+
+    Operation(String key) {
+        this.key = key;
+    }
+
+    String key() {
+        return key;
+    }
+
+    static final class Mix {
+        private final Operation[] operations;
+        private final double[] cumulative;
+        private final Map<Operation, Double> weights;
+
+        private Mix(Map<Operation, Double> weights) {
+            double total = weights.values().stream().mapToDouble(Double::doubleValue).sum();
+            if (total <= 0) {
+                throw new IllegalArgumentException("The operation mix needs at least one positive weight");
+            }
+
+            this.weights = weights;
+            this.operations = weights.keySet().toArray(new Operation[0]);
+            this.cumulative = new double[operations.length];
+            double sum = 0;
+            for (int i = 0; i < operations.length; i++) {
+                sum += weights.get(operations[i]) / total;
+                cumulative[i] = sum;
+            }
+        }
+
+        static Mix parse(String spec) {
+            Map<Operation, Double> weights = new EnumMap<>(Operation.class);
+            for (String entry : spec.split(",")) {
+                String[] parts = entry.trim().split(":");
+                Operation operation = byKey(parts[0]);
+                try {
+                    weights.put(operation, parts.length > 1 ? Double.parseDouble(parts[1]) : 1.0);
+                } catch (NumberFormatException e) {
+                    throw new IllegalArgumentException("Invalid weight in operation mix: " + entry, e);
+                }
+            }
+            return new Mix(weights);
+        }
+
+        Operation next() {
+            double value = ThreadLocalRandom.current().nextDouble();
+            for (int i = 0; i < operations.length; i++) {
+                if (value < cumulative[i]) return operations[i];
+            }
+            return operations[operations.length - 1];
+        }
+
+        @Override
+        public String toString() {
+            StringBuilder out = new StringBuilder();
+            weights.forEach((operation, weight) -> {
+                if (out.length() > 0) out.append(',');
+                out.append(operation.key).append(':').append(weight);
+            });
+            return out.toString();
+        }
+    }
+
+    private static Operation byKey(String key) {
+        String normalized = key.trim().toLowerCase(Locale.ROOT);
+        for (Operation operation : values()) {
+            if (operation.key.equals(normalized)) return operation;
+        }
+        throw new IllegalArgumentException("Unknown operation in mix: " + key);
+    }
+}
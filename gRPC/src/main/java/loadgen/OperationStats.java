@@ -0,0 +1,105 @@
+package loadgen;
+
+import io.grpc.Status;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+// Latencias (en microsegundos) y errores de un tipo de operación. Se guardan dos histogramas:
+// el corregido mide desde el momento en que la operación debía empezar según el ritmo objetivo,
+// así una pausa del servidor cuenta también para las peticiones que se quedaron esperando
+// (coordinated omission); el otro mide desde el envío real, solo para comparar.
+final class OperationStats {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+
+    private final Recorder corrected = new Recorder(MAX_TRACKABLE_MICROS, 3);
+    private final Recorder uncorrected = new Recorder(MAX_TRACKABLE_MICROS, 3);
+    private final Map<Status.Code, LongAdder> errors = new ConcurrentHashMap<>();
+    private final LongAdder latencySumMicros = new LongAdder();
+    private final LongAdder latencyCount = new LongAdder();
+    private final LongAdder bytes = new LongAdder();
+
+    // Acumulados por el hilo que reporta
+    private final Histogram totalCorrected = new Histogram(MAX_TRACKABLE_MICROS, 3);
+    private final Histogram totalUncorrected = new Histogram(MAX_TRACKABLE_MICROS, 3);
+    private Histogram intervalCorrected;
+    private Histogram intervalUncorrected;
+    private final Map<Status.Code, Long> totalErrors = new EnumMap<>(Status.Code.class);
+    private long errorsAtLastRoll;
+    private long intervalErrors;
+
+    // expectedIntervalNanos > 0 solo en carga cerrada sin ritmo: ahí no hay un inicio programado
+    // y HdrHistogram rellena las muestras que la espera impidió tomar
+    void recordSuccess(long intendedStartNanos, long sentNanos, long endNanos, long expectedIntervalNanos, long payloadBytes) {
+        long micros = clamp(TimeUnit.NANOSECONDS.toMicros(endNanos - intendedStartNanos));
+        long sentMicros = clamp(TimeUnit.NANOSECONDS.toMicros(endNanos - sentNanos));
+
+        corrected.recordValueWithExpectedInterval(micros, TimeUnit.NANOSECONDS.toMicros(expectedIntervalNanos));
+        uncorrected.recordValue(sentMicros);
+        latencySumMicros.add(sentMicros);
+        latencyCount.increment();
+        bytes.add(payloadBytes);
+    }
+
+    void recordError(Throwable error) {
+        errors.computeIfAbsent(Status.fromThrowable(error).getCode(), k -> new LongAdder()).increment();
+    }
+
+    // Latencia promedio observada desde el envío, usada como intervalo esperado en carga cerrada
+    long meanLatencyNanos() {
+        long count = latencyCount.sum();
+        return count == 0 ? 0 : TimeUnit.MICROSECONDS.toNanos(latencySumMicros.sum() / count);
+    }
+
+    // Toma lo registrado desde la llamada anterior y lo suma a los totales
+    void roll() {
+        intervalCorrected = corrected.getIntervalHistogram(intervalCorrected);
+        intervalUncorrected = uncorrected.getIntervalHistogram(intervalUncorrected);
+        totalCorrected.add(intervalCorrected);
+        totalUncorrected.add(intervalUncorrected);
+
+        long errorCount = errorCount();
+        intervalErrors = errorCount - errorsAtLastRoll;
+        errorsAtLastRoll = errorCount;
+    }
+
+    Histogram interval() {
+        return intervalCorrected;
+    }
+
+    long intervalErrors() {
+        return intervalErrors;
+    }
+
+    Histogram total() {
+        return totalCorrected;
+    }
+
+    Histogram totalUncorrected() {
+        return totalUncorrected;
+    }
+
+    long bytes() {
+        return bytes.sum();
+    }
+
+    Map<Status.Code, Long> errors() {
+        totalErrors.clear();
+        errors.forEach((code, count) -> totalErrors.put(code, count.sum()));
+        return totalErrors;
+    }
+
+    long errorCount() {
+        return errors.values().stream().mapToLong(LongAdder::sum).sum();
+    }
+
+    private static long clamp(long micros) {
+        return Math.min(Math.max(micros, 0), MAX_TRACKABLE_MICROS);
+    }
+}
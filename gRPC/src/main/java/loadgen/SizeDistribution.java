@@ -0,0 +1,73 @@
+package loadgen;
+
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+
+// Distribución de tamaños en bytes, escrita como texto en la configuración:
+//   fixed:4096            siempre el mismo tamaño
+//   uniform:1024:65536    uniforme entre los dos valores
+//   lognormal:262144:1.2  log-normal con esa mediana y sigma (pocas fotos grandes, muchas pequeñas)
+// Todas se recortan a [min, max].
+final class SizeDistribution {
+
+    private enum Kind { FIXED, UNIFORM, LOGNORMAL }
+
+    private final Kind kind;
+    private final double first;
+    private final double second;
+    private final int min;
+    private final int max;
+    private final String spec;
+
+    private SizeDistribution(Kind kind, double first, double second, int min, int max, String spec) {
+        this.kind = kind;
+        this.first = first;
+        this.second = second;
+        this.min = min;
+        this.max = max;
+        this.spec = spec;
+    }
+
+    static SizeDistribution parse(String spec, int min, int max) {
+        String[] parts = spec.trim().toLowerCase(Locale.ROOT).split(":");
+        try {
+            switch (parts[0]) {
+                case "fixed":
+                    return new SizeDistribution(Kind.FIXED, Double.parseDouble(parts[1]), 0, min, max, spec);
+                case "uniform":
+                    return new SizeDistribution(Kind.UNIFORM, Double.parseDouble(parts[1]), Double.parseDouble(parts[2]), min, max, spec);
+                case "lognormal":
+                    return new SizeDistribution(Kind.LOGNORMAL, Math.log(Double.parseDouble(parts[1])), Double.parseDouble(parts[2]), min, max, spec);
+                default:
+                    throw new IllegalArgumentException("Unknown size distribution: " + spec);
+            }
+        } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid size distribution: " + spec, e);
+        }
+    }
+
+    int sample() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        double value;
+        switch (kind) {
+            case UNIFORM:
+                value = first + random.nextDouble() * (second - first);
+                break;
+            case LOGNORMAL:
+                value = Math.exp(first + second * random.nextGaussian());
+                break;
+            default:
+                value = first;
+        }
+        return (int) Math.max(min, Math.min(max, Math.round(value)));
+    }
+
+    int max() {
+        return max;
+    }
+
+    @Override
+    public String toString() {
+        return spec;
+    }
+}
@@ -0,0 +1,251 @@
+package loadgen;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.UnsafeByteOperations;
+import com.proto.multimedia.GetMultimediaRequest;
+import com.proto.multimedia.GetMultimediaResponse;
+import com.proto.multimedia.MultimediaItem;
+import com.proto.multimedia.MultimediaServiceGrpc;
+import com.proto.multimedia.UploadRequest;
+import com.proto.multimedia.UploadResponse;
+import com.proto.post.CreatePostRequest;
+import com.proto.post.CreatePostResponse;
+import com.proto.post.MediaFile;
+import com.proto.post.PostServiceGrpc;
+import io.grpc.Channel;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Datos sintéticos y las llamadas de cada operación. Todas son asíncronas: el future se completa
+// con los bytes enviados o recibidos. Los posts creados se guardan en un anillo para que las
+// subidas y las lecturas caigan sobre posts existentes.
+final class Workload {
+
+    private static final String[] WORDS = {
+            "pregunta", "respuesta", "error", "java", "grpc", "mongo", "servidor", "cliente", "archivo",
+            "imagen", "consulta", "índice", "latencia", "memoria", "hilo", "stream", "post", "usuario"};
+
+    private final List<Channel> channels;
+    private final SizeDistribution postSizes;
+    private final SizeDistribution mediaSizes;
+    private final int mediaPerPost;
+    private final int chunkSize;
+    private final boolean uniqueMedia;
+    private final boolean includeData;
+    private final long deadlineMillis;
+
+    private final String text;
+    private final ByteString media;
+    private final AtomicReferenceArray<String> posts;
+    private final AtomicLong postsCreated = new AtomicLong();
+    private final AtomicLong sequence = new AtomicLong();
+
+    Workload(List<Channel> channels, SizeDistribution postSizes, SizeDistribution mediaSizes, int mediaPerPost,
+             int chunkSize, boolean uniqueMedia, boolean includeData, long deadlineMillis, int postPoolSize) {
+        this.channels = channels;
+        this.postSizes = postSizes;
+        this.mediaSizes = mediaSizes;
+        this.mediaPerPost = mediaPerPost;
+        this.chunkSize = chunkSize;
+        this.uniqueMedia = uniqueMedia;
+        this.includeData = includeData;
+        this.deadlineMillis = deadlineMillis;
+        this.posts = new AtomicReferenceArray<>(postPoolSize);
+
+        // Se generan una sola vez; cada operación toma una porción sin copiarla
+        Random random = new Random(42);
+        StringBuilder builder = new StringBuilder();
+        while (builder.length() < postSizes.max() * 2) {
+            builder.append(WORDS[random.nextInt(WORDS.length)]).append(random.nextInt(12) == 0 ? ". " : " ");
+        }
+        this.text = builder.toString();
+
+        byte[] bytes = new byte[mediaSizes.max() * 2];
+        random.nextBytes(bytes);
+        this.media = UnsafeByteOperations.unsafeWrap(bytes);
+    }
+
+    CompletableFuture<Long> execute(Operation operation) {
+        // Sin posts todavía no hay a qué subir ni qué leer
+        String postId = operation == Operation.CREATE_POST ? null : randomPost();
+        if (postId == null) {
+            return createPost();
+        }
+        return operation == Operation.UPLOAD ? upload(postId) : getMultimedia(postId);
+    }
+
+    long postsCreated() {
+        return postsCreated.get();
+    }
+
+    CompletableFuture<Long> createPost() {
+        CreatePostRequest.Builder request = CreatePostRequest.newBuilder()
+                .setTitle("Load test post " + sequence.incrementAndGet())
+                .setContent(randomText(postSizes.sample()))
+                .setAuthorId("loadgen")
+                .setCategoryId("loadgen");
+
+        long payload = request.getContent().length();
+        for (int i = 0; i < mediaPerPost; i++) {
+            ByteString data = randomMedia(mediaSizes.sample());
+            payload += data.size();
+            request.addMultimedia(MediaFile.newBuilder()
+                    .setFilename("media_" + i + ".bin")
+                    .setContentType("application/octet-stream")
+                    .setData(data));
+        }
+
+        long sent = payload;
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        PostServiceGrpc.newStub(channel())
+                .withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+                .createPost(request.build(), new UnaryObserver<>(result) {
+                    @Override
+                    public void onNext(CreatePostResponse response) {
+                        addPost(response.getPost().getId());
+                        result.complete(sent);
+                    }
+                });
+        return result;
+    }
+
+    CompletableFuture<Long> getMultimedia(String postId) {
+        GetMultimediaRequest request = GetMultimediaRequest.newBuilder()
+                .setPostId(postId)
+                .setIncludeData(includeData)
+                .build();
+
+        CompletableFuture<Long> result = new CompletableFuture<>();
+        MultimediaServiceGrpc.newStub(channel())
+                .withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+                .getMultimedia(request, new UnaryObserver<>(result) {
+                    @Override
+                    public void onNext(GetMultimediaResponse response) {
+                        long received = 0;
+                        for (MultimediaItem item : response.getMultimediaItemsList()) {
+                            received += item.getData().size();
+                        }
+                        result.complete(received);
+                    }
+                });
+        return result;
+    }
+
+    // Sube un archivo en chunks, enviando solo cuando el transporte está listo
+    CompletableFuture<Long> upload(String postId) {
+        ByteString data = randomMedia(mediaSizes.sample());
+        CompletableFuture<Long> result = new CompletableFuture<>();
+
+        MultimediaServiceGrpc.newStub(channel())
+                .withDeadlineAfter(deadlineMillis, TimeUnit.MILLISECONDS)
+                .upload(new ClientResponseObserver<UploadRequest, UploadResponse>() {
+                    private ClientCallStreamObserver<UploadRequest> requestStream;
+                    private int offset;
+                    private boolean done;
+
+                    @Override
+                    public void beforeStart(ClientCallStreamObserver<UploadRequest> requestStream) {
+                        this.requestStream = requestStream;
+                        requestStream.setOnReadyHandler(this::send);
+                    }
+
+                    private void send() {
+                        while (!done && requestStream.isReady()) {
+                            UploadRequest.Builder request = UploadRequest.newBuilder()
+                                    .setData(data.substring(offset, Math.min(data.size(), offset + chunkSize)));
+                            if (offset == 0) {
+                                request.setPostId(postId)
+                                        .setFilename("upload_" + sequence.incrementAndGet() + ".bin")
+                                        .setContentType("application/octet-stream");
+                            }
+                            requestStream.onNext(request.build());
+
+                            offset += chunkSize;
+                            if (offset >= data.size()) {
+                                done = true;
+                                requestStream.onCompleted();
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void onNext(UploadResponse response) {
+                    }
+
+                    @Override
+                    public void onError(Throwable error) {
+                        done = true;
+                        result.completeExceptionally(error);
+                    }
+
+                    @Override
+                    public void onCompleted() {
+                        result.complete((long) data.size());
+                    }
+                });
+        return result;
+    }
+
+    private Channel channel() {
+        return channels.get(ThreadLocalRandom.current().nextInt(channels.size()));
+    }
+
+    private void addPost(String postId) {
+        long index = postsCreated.getAndIncrement();
+        posts.set((int) (index % posts.length()), postId);
+    }
+
+    private String randomPost() {
+        long created = Math.min(postsCreated.get(), posts.length());
+        if (created == 0) return null;
+        return posts.get(ThreadLocalRandom.current().nextInt((int) created));
+    }
+
+    private String randomText(int length) {
+        int start = ThreadLocalRandom.current().nextInt(text.length() - length + 1);
+        return text.substring(start, start + length);
+    }
+
+    // Una porción del bloque aleatorio; con uniqueMedia se le antepone un contador para que el
+    // servidor no la deduplique y cada archivo se escriba de verdad
+    private ByteString randomMedia(int size) {
+        int start = ThreadLocalRandom.current().nextInt(media.size() - size + 1);
+        ByteString data = media.substring(start, start + size);
+        if (!uniqueMedia || size < Long.BYTES) {
+            return data;
+        }
+
+        ByteBuffer prefix = ByteBuffer.allocate(Long.BYTES).putLong(0, sequence.incrementAndGet());
+        return UnsafeByteOperations.unsafeWrap(prefix).concat(data.substring(Long.BYTES));
+    }
+
+    // Completa el future con error; onNext lo define cada operación
+    private abstract static class UnaryObserver<T> implements StreamObserver<T> {
+        private final CompletableFuture<Long> result;
+
+        UnaryObserver(CompletableFuture<Long> result) {
+            this.result = result;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            result.completeExceptionally(error);
+        }
+
+        @Override
+        public void onCompleted() {
+            // El resultado ya se completó en onNext
+            result.complete(0L);
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package metrics;
+
+import config.Settings;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Registro de métricas del proceso: histogramas de latencia (en microsegundos), contadores y
+// gauges. Las operaciones de Mongo y de disco más lentas se guardan junto con el post que las causó.
+public final class Metrics {
+
+    private static final long MAX_TRACKABLE_MICROS = TimeUnit.MINUTES.toMicros(10);
+    private static final int SLOW_OPERATIONS_KEPT = 100;
+    private static final long SLOW_OPERATION_MICROS =
+            TimeUnit.MILLISECONDS.toMicros(Settings.getLong("questhub.metrics.slow-op-ms", 100));
+
+    private static final Map<String, Histogram> histograms = new ConcurrentHashMap<>();
+    private static final Map<String, LongAdder> counters = new ConcurrentHashMap<>();
+    private static final Map<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private static final Deque<SlowOperation> slowOperations = new ArrayDeque<>();
+
+    private Metrics() {
+    }
+
+    public static void recordLatency(String name, long nanos) {
+        record(name, TimeUnit.NANOSECONDS.toMicros(nanos));
+    }
+
+    public static void record(String name, long value) {
+        histograms.computeIfAbsent(name, k -> new ConcurrentHistogram(MAX_TRACKABLE_MICROS, 3))
+                .recordValue(Math.min(Math.max(value, 0), MAX_TRACKABLE_MICROS));
+    }
+
+    // Mongo y disco: se registra la latencia de la operación y, si fue lenta, el post involucrado
+    public static void recordOperation(String operation, String postId, long nanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+        record("op." + operation, micros);
+
+        if (micros >= SLOW_OPERATION_MICROS) {
+            synchronized (slowOperations) {
+                if (slowOperations.size() == SLOW_OPERATIONS_KEPT) slowOperations.removeFirst();
+                slowOperations.addLast(new SlowOperation(Instant.now(), operation, postId, micros));
+            }
+        }
+    }
+
+    public static void increment(String name) {
+        add(name, 1);
+    }
+
+    public static void add(String name, long delta) {
+        counters.computeIfAbsent(name, k -> new LongAdder()).add(delta);
+    }
+
+    public static AtomicLong gauge(String name) {
+        return gauges.computeIfAbsent(name, k -> new AtomicLong());
+    }
+
+    // Formato de texto estilo Prometheus, para el endpoint de scrape y el volcado al log
+    public static String report() {
+        StringBuilder out = new StringBuilder();
+
+        new TreeMap<>(histograms).forEach((name, histogram) -> {
+            Histogram copy = histogram.copy();
+            String metric = sanitize(name);
+            out.append(metric).append("_count ").append(copy.getTotalCount()).append('\n');
+            for (double percentile : new double[]{50, 90, 99, 99.9}) {
+                out.append(metric).append("{quantile=\"").append(percentile / 100).append("\"} ")
+                        .append(copy.getValueAtPercentile(percentile)).append('\n');
+            }
+            out.append(metric).append("_max ").append(copy.getMaxValue()).append('\n');
+        });
+
+        new TreeMap<>(counters).forEach((name, counter) ->
+                out.append(sanitize(name)).append("_total ").append(counter.sum()).append('\n'));
+
+        new TreeMap<>(gauges).forEach((name, gauge) ->
+                out.append(sanitize(name)).append(' ').append(gauge.get()).append('\n'));
+
+        for (SlowOperation operation : slowOperations()) {
+            out.append("# slow ").append(operation.at).append(' ').append(operation.operation)
+                    .append(" post=").append(operation.postId)
+                    .append(' ').append(operation.micros).append("us\n");
+        }
+
+        return out.toString();
+    }
+
+    public static List<SlowOperation> slowOperations() {
+        synchronized (slowOperations) {
+            return new ArrayList<>(slowOperations);
+        }
+    }
+
+    private static String sanitize(String name) {
+        return "questhub_" + name.replaceAll("[^a-zA-Z0-9_]", "_");
+    }
+
+    public static final class SlowOperation {
+        public final Instant at;
+        public final String operation;
+        public final String postId;
+        public final long micros;
+
+        SlowOperation(Instant at, String operation, String postId, long micros) {
+            this.at = at;
+            this.operation = operation;
+            this.postId = postId;
+            this.micros = micros;
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package metrics;
+
+import com.sun.net.httpserver.HttpServer;
+import config.Settings;
+import dataaccess.MongoConnection;
+import dataaccess.MongoPoolStats;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Exporta las métricas por un endpoint HTTP local (/metrics) y/o con un volcado periódico al log.
+public class MetricsReporter {
+
+    private HttpServer httpServer;
+    private ScheduledExecutorService logDumper;
+
+    public void start() throws IOException {
+        int port = Settings.getInt("questhub.metrics.port", 9464);
+        if (port > 0) {
+            httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+            httpServer.createContext("/metrics", exchange -> {
+                byte[] body = fullReport().getBytes(StandardCharsets.UTF_8);
+                exchange.getResponseHeaders().set("Content-Type", "text/plain; version=0.0.4; charset=utf-8");
+                exchange.sendResponseHeaders(200, body.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(body);
+                }
+            });
+            httpServer.start();
+            System.out.println("Métricas disponibles en http://localhost:" + port + "/metrics");
+        }
+
+        long interval = Settings.getLong("questhub.metrics.log-interval-seconds", 60);
+        if (interval > 0) {
+            logDumper = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "metrics-log");
+                thread.setDaemon(true);
+                return thread;
+            });
+            logDumper.scheduleAtFixedRate(() -> System.out.print(fullReport()), interval, interval, TimeUnit.SECONDS);
+        }
+    }
+
+    public void stop() {
+        if (httpServer != null) httpServer.stop(0);
+        if (logDumper != null) logDumper.shutdownNow();
+    }
+
+    private static String fullReport() {
+        MongoPoolStats pool = MongoConnection.getPoolStats();
+        return Metrics.report()
+                + "questhub_mongo_pool_open " + pool.getOpenConnections() + '\n'
+                + "questhub_mongo_pool_checked_out " + pool.getCheckedOutConnections() + '\n'
+                + "questhub_mongo_pool_checkout_failures_total " + pool.getCheckoutFailures() + '\n'
+                + "questhub_mongo_pool_wait_avg_micros " + pool.getAverageWaitMicros() + '\n'
+                + "questhub_mongo_pool_wait_max_micros " + pool.getMaxWaitMicros() + '\n';
+    }
+}
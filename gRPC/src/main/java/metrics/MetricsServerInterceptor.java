@@ -0,0 +1,79 @@
+package metrics;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Mide cada llamada: latencia por método, bytes y mensajes en ambas direcciones, llamadas en
+// curso y códigos de estado. Debe registrarse al final para envolver a los demás interceptores.
+public class MetricsServerInterceptor implements ServerInterceptor {
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call,
+            Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+
+        String method = call.getMethodDescriptor().getFullMethodName().replace('/', '.');
+        long start = System.nanoTime();
+        AtomicBoolean finished = new AtomicBoolean();
+        Metrics.gauge("grpc.in_flight." + method).incrementAndGet();
+
+        Runnable finish = () -> Metrics.gauge("grpc.in_flight." + method).decrementAndGet();
+
+        ServerCall<ReqT, RespT> measuredCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void sendMessage(RespT message) {
+                Metrics.increment("grpc.messages_sent." + method);
+                Metrics.add("grpc.bytes_sent." + method, sizeOf(message));
+                super.sendMessage(message);
+            }
+
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (finished.compareAndSet(false, true)) {
+                    record(method, status, start);
+                    finish.run();
+                }
+                super.close(status, trailers);
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener = next.startCall(measuredCall, headers);
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            @Override
+            public void onMessage(ReqT message) {
+                Metrics.increment("grpc.messages_received." + method);
+                Metrics.add("grpc.bytes_received." + method, sizeOf(message));
+                super.onMessage(message);
+            }
+
+            @Override
+            public void onCancel() {
+                // Si el cliente cancela, close() nunca se llama
+                if (finished.compareAndSet(false, true)) {
+                    record(method, Status.CANCELLED, start);
+                    finish.run();
+                }
+                super.onCancel();
+            }
+        };
+    }
+
+    private static void record(String method, Status status, long start) {
+        Metrics.recordLatency("grpc.latency." + method, System.nanoTime() - start);
+        Metrics.increment("grpc.status." + method + "." + status.getCode());
+    }
+
+    private static long sizeOf(Object message) {
+        return message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : 0;
+    }
+}
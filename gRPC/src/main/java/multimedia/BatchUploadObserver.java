@@ -0,0 +1,203 @@
+package multimedia;
+
+import com.proto.multimedia.UploadBatchCommitted;
+import com.proto.multimedia.UploadBatchRequest;
+import com.proto.multimedia.UploadBatchResponse;
+import com.proto.multimedia.UploadFileAck;
+import com.proto.multimedia.UploadFileData;
+import com.proto.multimedia.UploadFileHeader;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import io.grpc.stub.StreamObserver;
+import metrics.Metrics;
+import org.bson.Document;
+import preview.PreviewGenerator;
+import storage.BlobReclaimer;
+import storage.BlobWriter;
+import storage.BlobStore;
+import storage.StoredBlob;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+// Recibe varios archivos intercalados en un solo stream. Cada archivo se confirma al cliente en
+// cuanto se guarda en disco; los metadatos se escriben al final con una sola actualización por post.
+class BatchUploadObserver implements StreamObserver<UploadBatchRequest> {
+
+    private final MultimediaServerImplementation service;
+    private final BlobStore blobStore;
+    private final PreviewGenerator previewGenerator;
+    private final BlobReclaimer blobReclaimer;
+    private final ServerCallStreamObserver<UploadBatchResponse> responseObserver;
+
+    private final Map<Integer, PendingFile> openFiles = new HashMap<>();
+    private final Map<String, List<Document>> documentsByPost = new LinkedHashMap<>();
+    private final Map<String, List<StoredBlob>> blobsByPost = new HashMap<>();
+    private boolean failed;
+
+    BatchUploadObserver(MultimediaServerImplementation service, BlobStore blobStore,
+                        PreviewGenerator previewGenerator, BlobReclaimer blobReclaimer,
+                        ServerCallStreamObserver<UploadBatchResponse> responseObserver) {
+        this.service = service;
+        this.blobStore = blobStore;
+        this.previewGenerator = previewGenerator;
+        this.blobReclaimer = blobReclaimer;
+        this.responseObserver = responseObserver;
+    }
+
+    @Override
+    public void onNext(UploadBatchRequest request) {
+        if (failed) return;
+
+        try {
+            switch (request.getFrameCase()) {
+                case HEADER:
+                    openFile(request.getHeader());
+                    break;
+                case DATA:
+                    appendData(request.getData());
+                    break;
+                case END:
+                    finishFile(request.getEnd().getFileIndex());
+                    break;
+                default:
+                    fail(Status.INVALID_ARGUMENT.withDescription("Empty upload frame"));
+            }
+
+            // Siguiente frame solo después de procesar este (control de flujo manual)
+            if (!failed) responseObserver.request(1);
+        } catch (IOException e) {
+            System.err.println("Upload failed: " + e.getMessage());
+            fail(Status.INTERNAL.withDescription("Could not write file").withCause(e));
+        }
+    }
+
+    private void openFile(UploadFileHeader header) throws IOException {
+        if (header.getPostId().isEmpty()) {
+            fail(Status.INVALID_ARGUMENT.withDescription("postId is missing for file " + header.getFileIndex()));
+            return;
+        }
+        if (openFiles.containsKey(header.getFileIndex())) {
+            fail(Status.INVALID_ARGUMENT.withDescription("Duplicate file index " + header.getFileIndex()));
+            return;
+        }
+        openFiles.put(header.getFileIndex(), new PendingFile(header, blobStore.newWriter()));
+    }
+
+    private void appendData(UploadFileData data) throws IOException {
+        PendingFile file = openFiles.get(data.getFileIndex());
+        if (file == null) {
+            fail(Status.INVALID_ARGUMENT.withDescription("Data for unknown file index " + data.getFileIndex()));
+            return;
+        }
+
+        long start = System.nanoTime();
+        file.writer.append(data.getData());
+        Metrics.recordOperation("disk.write", file.header.getPostId(), System.nanoTime() - start);
+    }
+
+    private void finishFile(int fileIndex) throws IOException {
+        PendingFile file = openFiles.remove(fileIndex);
+        if (file == null) {
+            fail(Status.INVALID_ARGUMENT.withDescription("End for unknown file index " + fileIndex));
+            return;
+        }
+
+        StoredBlob blob = file.writer.commit();
+        UploadFileHeader header = file.header;
+        blobsByPost.computeIfAbsent(header.getPostId(), k -> new ArrayList<>()).add(blob);
+
+        documentsByPost.computeIfAbsent(header.getPostId(), k -> new ArrayList<>())
+                .add(MultimediaServerImplementation.multimediaDocument(header.getFilename(), header.getContentType(), blob));
+
+        responseObserver.onNext(UploadBatchResponse.newBuilder()
+                .setFileAck(UploadFileAck.newBuilder()
+                        .setFileIndex(fileIndex)
+                        .setUrl(blob.getKey())
+                        .setSha256(blob.getSha256())
+                        .setSize(blob.getSize())
+                        .setDeduplicated(blob.isDeduplicated()))
+                .build());
+    }
+
+    @Override
+    public void onError(Throwable t) {
+        System.err.println("Upload cancelled: " + t.getMessage());
+        rollback();
+    }
+
+    @Override
+    public void onCompleted() {
+        if (failed) return;
+
+        if (!openFiles.isEmpty()) {
+            fail(Status.INVALID_ARGUMENT.withDescription("Stream ended with unfinished files " + openFiles.keySet()));
+            return;
+        }
+
+        // Una escritura por post; todas se confirman antes de responder
+        Map<String, CompletableFuture<Void>> writes = new LinkedHashMap<>();
+        int fileCount = 0;
+        for (Map.Entry<String, List<Document>> entry : documentsByPost.entrySet()) {
+            writes.put(entry.getKey(), service.pushMultimedia(entry.getKey(), entry.getValue()));
+            fileCount += entry.getValue().size();
+        }
+        int committedFiles = fileCount;
+
+        CompletableFuture.allOf(writes.values().toArray(new CompletableFuture[0])).whenComplete((ignored, error) -> {
+            if (error != null) {
+                // Solo se liberan los archivos de los posts cuya escritura falló
+                writes.forEach((postId, write) -> {
+                    if (!write.isCompletedExceptionally()) blobsByPost.remove(postId);
+                });
+                System.err.println("Upload failed: " + error.getMessage());
+                fail(MultimediaServerImplementation.metadataError(error).getStatus());
+                return;
+            }
+
+            documentsByPost.forEach((postId, docs) -> docs.forEach(doc -> previewGenerator.submit(
+                    postId, doc.getString("sha256"), doc.getString("content_type"), doc.getString("file_url"))));
+
+            blobsByPost.clear();
+            responseObserver.onNext(UploadBatchResponse.newBuilder()
+                    .setCommitted(UploadBatchCommitted.newBuilder()
+                            .addAllPostIds(documentsByPost.keySet())
+                            .setFileCount(committedFiles))
+                    .build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    private void fail(Status status) {
+        failed = true;
+        rollback();
+        responseObserver.onError(status.asRuntimeException());
+    }
+
+    // Los temporales sin commit se descartan y los archivos ya publicados pasan al reclaimer
+    private void rollback() {
+        for (PendingFile file : openFiles.values()) {
+            file.writer.abort();
+        }
+        openFiles.clear();
+        for (List<StoredBlob> blobs : blobsByPost.values()) {
+            blobs.forEach(blobReclaimer::releaseCreated);
+        }
+        blobsByPost.clear();
+    }
+
+    private static class PendingFile {
+        final UploadFileHeader header;
+        final BlobWriter writer;
+
+        PendingFile(UploadFileHeader header, BlobWriter writer) {
+            this.header = header;
+            this.writer = writer;
+        }
+    }
+}
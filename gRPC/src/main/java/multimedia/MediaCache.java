@@ -0,0 +1,72 @@
+package multimedia;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import config.Settings;
+import metrics.Metrics;
+import org.bson.Document;
+import storage.BlobStore;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+
+// Caché de los archivos servidos recientemente, fuera del heap (ByteBuffer directos). La llave es el
+// sha256 del contenido, que nunca cambia, así que no hace falta invalidar. Los buffers se entregan a
+// gRPC sin copiarlos; un buffer desalojado sigue vivo mientras alguna respuesta lo esté enviando.
+// El límite debe caber en -XX:MaxDirectMemorySize.
+class MediaCache {
+
+    private final Cache<String, ByteBuffer> cache;
+    private final long maxItemBytes;
+
+    MediaCache() {
+        this(Settings.getLong("questhub.media-cache.max-bytes", 256L * 1024 * 1024),
+                Settings.getLong("questhub.media-cache.max-item-bytes", 4L * 1024 * 1024));
+    }
+
+    MediaCache(long maxBytes, long maxItemBytes) {
+        this.maxItemBytes = Math.min(maxItemBytes, Integer.MAX_VALUE);
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String sha256, ByteBuffer buffer) -> buffer.capacity())
+                .build();
+    }
+
+    // El contenido completo del archivo (solo lectura), o null si el archivo no se puede cachear
+    ByteBuffer get(Document multimediaDoc, BlobStore blobStore) throws IOException {
+        String sha256 = multimediaDoc.getString("sha256");
+        Object size = multimediaDoc.get("size");
+        if (sha256 == null || !(size instanceof Number) || ((Number) size).longValue() > maxItemBytes) {
+            return null;
+        }
+
+        ByteBuffer cached = cache.getIfPresent(sha256);
+        if (cached != null) {
+            Metrics.increment("media_cache.hit");
+            return cached.asReadOnlyBuffer();
+        }
+
+        Metrics.increment("media_cache.miss");
+        try {
+            // Lecturas concurrentes del mismo archivo esperan a una sola carga
+            return cache.get(sha256, k -> load(blobStore, multimediaDoc.getString("file_url"))).asReadOnlyBuffer();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+
+    private ByteBuffer load(BlobStore blobStore, String key) {
+        try (SeekableByteChannel channel = blobStore.open(key)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(Math.toIntExact(channel.size()));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer) < 0) break;
+            }
+            buffer.flip();
+            return buffer;
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
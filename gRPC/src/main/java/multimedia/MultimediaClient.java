@@ -1,68 +1,196 @@
 package multimedia;
 
 import com.proto.multimedia.MultimediaServiceGrpc;
-import com.proto.multimedia.UploadRequest;
-import com.proto.multimedia.UploadResponse;
+import com.proto.multimedia.UploadBatchRequest;
+import com.proto.multimedia.UploadBatchResponse;
+import com.proto.multimedia.UploadFileAck;
+import com.proto.multimedia.UploadFileData;
+import com.proto.multimedia.UploadFileEnd;
+import com.proto.multimedia.UploadFileHeader;
+import com.google.protobuf.UnsafeByteOperations;
 
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
-import io.grpc.stub.StreamObserver;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
 
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 public class MultimediaClient {
 
+    private static final int CHUNK_SIZE = 64 * 1024;
+
     private final MultimediaServiceGrpc.MultimediaServiceStub asyncStub;
+    private final ParallelUploader uploader;
     private final String postId;
 
     public MultimediaClient(ManagedChannel channel, String postId) {
         this.asyncStub = MultimediaServiceGrpc.newStub(channel);
+        this.uploader = new ParallelUploader(channel);
         this.postId = postId;
     }
 
+    // El archivo se envía en chunks desde el disco, con reintentos si el servidor no está disponible
     public void uploadFile(String filePath) throws InterruptedException, IOException {
-        CountDownLatch latch = new CountDownLatch(1);
+        try {
+            ParallelUploader.UploadResult result = uploader.upload(postId, Paths.get(filePath)).get(5, TimeUnit.MINUTES);
+            System.out.println("URL recibido del servidor: " + result.getUrl());
+            System.out.println("Subida completada");
+        } catch (ExecutionException | TimeoutException e) {
+            System.err.println("Error en la subida: " + (e.getCause() != null ? e.getCause().getMessage() : e.getMessage()));
+        }
+    }
 
-        StreamObserver<UploadRequest> requestObserver = asyncStub.upload(new StreamObserver<UploadResponse>() {
-            @Override
-            public void onNext(UploadResponse uploadResponse) {
-                System.out.println("URL recibido del servidor: " + uploadResponse.getUrl());
+    // Sube varios archivos en un solo stream, intercalando sus chunks; el servidor los guarda
+    // todos en el post con una sola escritura al terminar. Los frames se generan solo cuando el
+    // stream está listo, así el cliente nunca tiene en memoria más que unos cuantos chunks.
+    public void uploadFiles(List<String> filePaths) throws InterruptedException, IOException {
+        List<Path> paths = new ArrayList<>();
+        List<FileChannel> channels = new ArrayList<>();
+        try {
+            for (String filePath : filePaths) {
+                Path path = Paths.get(filePath);
+                paths.add(path);
+                channels.add(FileChannel.open(path, StandardOpenOption.READ));
             }
+        } catch (IOException e) {
+            closeAll(channels);
+            throw e;
+        }
 
-            @Override
-            public void onError(Throwable throwable) {
-                System.err.println("Error en la subida: " + throwable.getMessage());
-                latch.countDown();
-            }
+        BatchSender sender = new BatchSender(paths, channels);
+        asyncStub.uploadBatch(sender);
 
-            @Override
-            public void onCompleted() {
-                System.out.println("Subida completada");
-                latch.countDown();
-            }
-        });
-
-        // Leer archivo bytes
-        byte[] fileBytes = Files.readAllBytes(Paths.get(filePath));
-        String filename = Paths.get(filePath).getFileName().toString();
-
-        // Enviar mensaje con archivo y postId
-        UploadRequest request = UploadRequest.newBuilder()
-                .setPostId(postId)          // aquí va el postId
-                .setFilename(filename)
-                .setContentType("image/jpeg") // ajusta si quieres
-                .setData(com.google.protobuf.ByteString.copyFrom(fileBytes))
-                .build();
+        // Esperar la respuesta
+        sender.latch.await(5, TimeUnit.MINUTES);
+        if (sender.readError != null) {
+            throw sender.readError;
+        }
+    }
 
-        requestObserver.onNext(request);
-        requestObserver.onCompleted();
+    private static void closeAll(List<FileChannel> channels) {
+        for (FileChannel channel : channels) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                System.err.println("Error cerrando archivo: " + e.getMessage());
+            }
+        }
+    }
 
-        // Esperar la respuesta
-        latch.await(1, TimeUnit.MINUTES);
+    // Primero los encabezados de todos los archivos y después un chunk de cada uno por turno
+    private class BatchSender implements ClientResponseObserver<UploadBatchRequest, UploadBatchResponse> {
+        private final List<Path> paths;
+        private final List<FileChannel> channels;
+        private final boolean[] done;
+        private final CountDownLatch latch = new CountDownLatch(1);
+        private ClientCallStreamObserver<UploadBatchRequest> requestStream;
+        private int headersSent;
+        private int next;
+        private int remaining;
+        private boolean finished;
+        private volatile IOException readError;
+
+        BatchSender(List<Path> paths, List<FileChannel> channels) {
+            this.paths = paths;
+            this.channels = channels;
+            this.done = new boolean[channels.size()];
+            this.remaining = channels.size();
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<UploadBatchRequest> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(this::send);
+        }
+
+        // Llamado cada vez que el transporte puede aceptar más datos
+        private void send() {
+            try {
+                while (!finished && requestStream.isReady()) {
+                    if (headersSent < paths.size()) {
+                        Path path = paths.get(headersSent);
+                        requestStream.onNext(UploadBatchRequest.newBuilder()
+                                .setHeader(UploadFileHeader.newBuilder()
+                                        .setFileIndex(headersSent)
+                                        .setPostId(postId)
+                                        .setFilename(path.getFileName().toString())
+                                        .setContentType(ParallelUploader.contentTypeOf(path)))
+                                .build());
+                        headersSent++;
+                        continue;
+                    }
+
+                    if (remaining == 0) {
+                        finished = true;
+                        closeAll(channels);
+                        requestStream.onCompleted();
+                        return;
+                    }
+
+                    int i = next;
+                    next = (next + 1) % channels.size();
+                    if (done[i]) continue;
+
+                    ByteBuffer buffer = ByteBuffer.allocate(CHUNK_SIZE);
+                    int read = channels.get(i).read(buffer);
+                    if (read > 0) {
+                        buffer.flip();
+                        requestStream.onNext(UploadBatchRequest.newBuilder()
+                                .setData(UploadFileData.newBuilder()
+                                        .setFileIndex(i)
+                                        .setData(UnsafeByteOperations.unsafeWrap(buffer)))
+                                .build());
+                    } else {
+                        done[i] = true;
+                        remaining--;
+                        requestStream.onNext(UploadBatchRequest.newBuilder()
+                                .setEnd(UploadFileEnd.newBuilder().setFileIndex(i))
+                                .build());
+                    }
+                }
+            } catch (IOException e) {
+                finished = true;
+                readError = e;
+                closeAll(channels);
+                requestStream.cancel("Could not read file", e);
+            }
+        }
+
+        @Override
+        public void onNext(UploadBatchResponse response) {
+            if (response.hasFileAck()) {
+                UploadFileAck ack = response.getFileAck();
+                System.out.println("Archivo " + ack.getFileIndex() + " guardado: " + ack.getUrl());
+            } else if (response.hasCommitted()) {
+                System.out.println("Archivos registrados en el post: " + response.getCommitted().getFileCount());
+            }
+        }
+
+        @Override
+        public void onError(Throwable throwable) {
+            System.err.println("Error en la subida: " + throwable.getMessage());
+            finished = true;
+            closeAll(channels);
+            latch.countDown();
+        }
+
+        @Override
+        public void onCompleted() {
+            System.out.println("Subida completada");
+            latch.countDown();
+        }
     }
 
     public static void main(String[] args) throws InterruptedException, IOException {
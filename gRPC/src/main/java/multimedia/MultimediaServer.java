@@ -1,7 +1,11 @@
 package multimedia;
 
+import dataaccess.MongoConnection;
 import io.grpc.Server;
+import metrics.MetricsReporter;
+import metrics.MetricsServerInterceptor;
 import io.grpc.ServerBuilder;
+import io.grpc.ServerInterceptors;
 import java.io.IOException;
 
 public class MultimediaServer {
@@ -10,19 +14,26 @@ public class MultimediaServer {
 
         Server server = ServerBuilder
                 .forPort(port)
-                .addService(new MultimediaServerImplementation())
+                .addService(ServerInterceptors.intercept(
+                        new MultimediaServerImplementation(), new UploadAdmissionInterceptor(new UploadAdmission())))
                 .intercept(new ServerCallMetadataInterceptor())
+                .intercept(new MetricsServerInterceptor())
                 .maxInboundMessageSize(20 * 1024 * 1024) // 20 MB
                 .build();
 
 
         server.start();
+        MetricsReporter metricsReporter = new MetricsReporter();
+        metricsReporter.start();
         System.out.println("Servidor iniciado..");
         System.out.println("Escuchando en puerto " + port);
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Recibiendo solicitud de apagado");
             server.shutdown();
+            metricsReporter.stop();
+            System.out.println("Pool de MongoDB: " + MongoConnection.getPoolStats());
+            MongoConnection.close();
             System.out.println("Servidor detenido");
         }));
 
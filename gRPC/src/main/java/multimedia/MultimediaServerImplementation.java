@@ -6,186 +6,700 @@ import com.proto.multimedia.UploadResponse;
 import com.proto.multimedia.GetMultimediaRequest;
 import com.proto.multimedia.GetMultimediaResponse;
 import com.proto.multimedia.MultimediaItem;
+import com.proto.multimedia.MultimediaChunk;
+import com.proto.multimedia.ByteRange;
+import com.proto.multimedia.StartUploadRequest;
+import com.proto.multimedia.UploadSession;
+import com.proto.multimedia.UploadChunk;
+import com.proto.multimedia.UploadStatusRequest;
+import com.proto.multimedia.CompleteUploadRequest;
+import com.proto.multimedia.CompleteUploadResponse;
+import com.proto.multimedia.UploadBatchRequest;
+import com.proto.multimedia.UploadBatchResponse;
 import dataaccess.MongoConnection;
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.model.Filters;
-import com.mongodb.client.model.Updates;
+import dataaccess.PostRepository;
+import metrics.Metrics;
+import com.mongodb.client.model.Projections;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import preview.PreviewGenerator;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import com.google.protobuf.ByteString;
-import java.io.File;
-import java.io.FileOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+import storage.BlobReclaimer;
+import storage.BlobWriter;
+import storage.BlobStore;
+import storage.StoredBlob;
 import java.io.IOException;
-import java.nio.file.Files;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Consumer;
 
 public class MultimediaServerImplementation extends MultimediaServiceGrpc.MultimediaServiceImplBase {
 
-    private static final String UPLOAD_DIR = "C:/questhub-uploads/posts/";
+    private static final Bson MULTIMEDIA_PROJECTION = Projections.include("multimedia");
 
-    @Override
-    public StreamObserver<UploadRequest> upload(StreamObserver<UploadResponse> responseObserver) {
+    private final PostRepository posts;
+    private final BlobStore blobStore;
+    private final UploadSessionManager uploadSessions;
+    private final MultimediaWriteBatcher writeBatcher;
+    private final PreviewGenerator previewGenerator;
+    private final MediaCache mediaCache = new MediaCache();
+    private final BlobReclaimer blobReclaimer;
+    private final Consumer<String> multimediaAdded;
 
-        MongoConnection.connect();
-        MongoCollection<Document> postsCollection = MongoConnection.getDatabase().getCollection("posts");
+    public MultimediaServerImplementation() {
+        this(MongoConnection.getPostRepository(), BlobStore.getDefault());
+    }
 
-        final String[] postIdHolder = new String[1];
-        final String[] fileNameHolder = new String[1];
-        final String[] contentTypeHolder = new String[1];
-        final List<ByteString> dataChunks = new ArrayList<>();
+    public MultimediaServerImplementation(PostRepository posts, BlobStore blobStore) {
+        this(posts, blobStore, new PreviewGenerator(posts, blobStore), new BlobReclaimer(posts, blobStore), postId -> { });
+    }
+
+    // Con los dos servicios en un proceso, previewGenerator y blobReclaimer son las mismas instancias que
+    // usa PostService; multimediaAdded recibe el id de cada post al que se le agregaron archivos
+    public MultimediaServerImplementation(PostRepository posts, BlobStore blobStore, PreviewGenerator previewGenerator,
+                                          BlobReclaimer blobReclaimer, Consumer<String> multimediaAdded) {
+        this.posts = posts;
+        this.blobReclaimer = blobReclaimer;
+        this.multimediaAdded = multimediaAdded;
+        this.blobStore = blobStore;
+        this.uploadSessions = new UploadSessionManager(blobStore);
+        this.writeBatcher = new MultimediaWriteBatcher(posts);
+        this.previewGenerator = previewGenerator;
+    }
+
+    @Override
+    public StreamObserver<UploadRequest> upload(StreamObserver<UploadResponse> responseObserver) {
+        ServerCallStreamObserver<UploadResponse> serverObserver = requestManually(responseObserver);
 
         return new StreamObserver<UploadRequest>() {
 
+            private String postId;
+            private String originalFilename;
+            private String contentType;
+            private BlobWriter writer;
+            private boolean failed;
+
             @Override
             public void onNext(UploadRequest req) {
-                if (postIdHolder[0] == null) {
-                    postIdHolder[0] = req.getPostId();
-                    fileNameHolder[0] = req.getFilename();
-                    contentTypeHolder[0] = req.getContentType();
-                }
+                if (failed) return;
+
+                try {
+                    if (writer == null) {
+                        postId = req.getPostId();
+                        originalFilename = req.getFilename();
+                        contentType = req.getContentType();
 
-                dataChunks.add(req.getData());
+                        // El archivo temporal se abre con el primer chunk y se llena conforme llegan los demás
+                        writer = blobStore.newWriter();
+                    }
+
+                    long start = System.nanoTime();
+                    writer.append(req.getData());
+                    Metrics.recordOperation("disk.write", postId, System.nanoTime() - start);
+
+                    // El siguiente chunk se pide solo cuando este ya está en disco
+                    serverObserver.request(1);
+                } catch (IOException e) {
+                    System.err.println("Upload failed: " + e.getMessage());
+                    failed = true;
+                    discardTempFile();
+                    responseObserver.onError(e);
+                }
             }
 
             @Override
             public void onError(Throwable t) {
                 System.err.println("Upload cancelled: " + t.getMessage());
+                discardTempFile();
             }
 
             @Override
             public void onCompleted() {
+                if (failed) return;
+
                 try {
-                    if (postIdHolder[0] == null || postIdHolder[0].isEmpty()) {
+                    if (postId == null || postId.isEmpty()) {
+                        discardTempFile();
                         responseObserver.onError(new Throwable("postId is missing in request"));
                         return;
                     }
 
-                    File uploadDir = new File(UPLOAD_DIR);
-                    if (!uploadDir.exists()) uploadDir.mkdirs();
+                    // El archivo solo aparece en su ubicación final cuando está completo
+                    StoredBlob blob = writer.commit();
+                    writer = null;
+
+                    String fileUrl = blob.getKey();
+
+                    // Se responde cuando la escritura del lote que incluye este archivo es confirmada
+                    pushMultimedia(postId, originalFilename, contentType, blob).whenComplete((ignored, error) -> {
+                        if (error != null) {
+                            blobReclaimer.releaseCreated(blob);
+                            System.err.println("Upload failed: " + error.getMessage());
+                            responseObserver.onError(metadataError(error));
+                            return;
+                        }
+
+                        previewGenerator.submit(postId, blob.getSha256(), contentType, blob.getKey());
 
-                    // Generar un nombre de archivo seguro y único
-                    String safeFilename = fileNameHolder[0].replaceAll("[^a-zA-Z0-9\\.\\-_]", "_");
-                    String timestamp = String.valueOf(Instant.now().toEpochMilli());
-                    String fileExtension = "";
+                        // Responder con el URL del archivo
+                        responseObserver.onNext(UploadResponse.newBuilder()
+                                .setUrl(fileUrl)
+                                .setSha256(blob.getSha256())
+                                .setDeduplicated(blob.isDeduplicated())
+                                .build());
+                        responseObserver.onCompleted();
+                    });
 
-                    int dotIndex = safeFilename.lastIndexOf('.');
-                    if (dotIndex >= 0) {
-                        fileExtension = safeFilename.substring(dotIndex);
-                        safeFilename = safeFilename.substring(0, dotIndex);
+                } catch (Exception e) {
+                    System.err.println("Upload failed: " + e.getMessage());
+                    discardTempFile();
+                    responseObserver.onError(e);
+                }
+            }
+
+            private void discardTempFile() {
+                if (writer != null) writer.abort();
+                writer = null;
+            }
+        };
+    }
+
+    @Override
+    public void startUpload(StartUploadRequest request, StreamObserver<UploadSession> responseObserver) {
+        try {
+            if (request.getPostId().isEmpty()) {
+                responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Post ID is required").asRuntimeException());
+                return;
+            }
+
+            // Si el contenido ya existe no se enlaza solo por conocer el hash: la sesión trae un reto que el
+            // cliente responde en CompleteUpload con bytes del archivo (o sube el archivo normalmente)
+            StoredBlob existing = request.getSha256().isEmpty() ? null : blobStore.find(request.getSha256());
+            if (existing != null && request.getTotalSize() > 0 && request.getTotalSize() != existing.getSize()) {
+                existing = null;
+            }
+
+            UploadSessionManager.Session session = existing != null
+                    ? uploadSessions.startWithProof(request.getPostId(), request.getFilename(), request.getContentType(), existing)
+                    : uploadSessions.start(request.getPostId(), request.getFilename(), request.getContentType(), request.getTotalSize());
+
+            responseObserver.onNext(toUploadSession(session));
+            responseObserver.onCompleted();
+
+        } catch (Exception e) {
+            System.err.println("Could not start upload: " + e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription("Could not start upload").withCause(e).asRuntimeException());
+        }
+    }
+
+    @Override
+    public StreamObserver<UploadChunk> uploadChunks(StreamObserver<UploadSession> responseObserver) {
+        ServerCallStreamObserver<UploadSession> serverObserver = requestManually(responseObserver);
+
+        return new StreamObserver<UploadChunk>() {
+
+            private UploadSessionManager.Session session;
+            private boolean failed;
+
+            @Override
+            public void onNext(UploadChunk chunk) {
+                if (failed) return;
+
+                if (session == null) {
+                    session = uploadSessions.get(chunk.getUploadId());
+                    if (session == null) {
+                        fail(Status.NOT_FOUND.withDescription("Upload session not found: " + chunk.getUploadId()));
+                        return;
                     }
+                }
 
-                    String uniqueFilename = safeFilename + "_" + timestamp + fileExtension;
-                    File file = new File(uploadDir, uniqueFilename);
+                synchronized (session) {
+                    long committed = session.committedOffset();
+                    long offset = chunk.getOffset();
+                    ByteString data = chunk.getData();
 
-                    // Escribir los chunks al archivo
-                    try (FileOutputStream fos = new FileOutputStream(file)) {
-                        for (ByteString chunk : dataChunks) {
-                            fos.write(chunk.toByteArray());
-                        }
+                    if (offset > committed) {
+                        fail(Status.FAILED_PRECONDITION.withDescription(
+                                "Chunk offset " + offset + " is past committed offset " + committed));
+                        return;
                     }
 
-                    String fileUrl = file.getAbsolutePath();
+                    // Al reanudar, el cliente puede reenviar bytes que ya estaban guardados
+                    if (offset < committed) {
+                        long alreadyCommitted = committed - offset;
+                        if (alreadyCommitted >= data.size()) {
+                            serverObserver.request(1);
+                            return;
+                        }
+                        data = data.substring((int) alreadyCommitted);
+                    }
 
-                    // Crear documento multimedia
-                    Document multimediaDoc = new Document()
-                            .append("filename", uniqueFilename)
-                            .append("original_filename", fileNameHolder[0])
-                            .append("content_type", contentTypeHolder[0])
-                            .append("file_url", fileUrl)
-                            .append("uploaded_at", Instant.now().toString());
+                    try {
+                        long start = System.nanoTime();
+                        session.writer.append(data);
+                        Metrics.recordOperation("disk.write", session.postId, System.nanoTime() - start);
+                        session.touch();
+                        serverObserver.request(1);
+                    } catch (IOException e) {
+                        System.err.println("Upload failed: " + e.getMessage());
+                        fail(Status.INTERNAL.withDescription("Could not write chunk").withCause(e));
+                    }
+                }
+            }
 
-                    // Actualizar el post en MongoDB
-                    postsCollection.updateOne(
-                            Filters.eq("_id", new org.bson.types.ObjectId(postIdHolder[0])),
-                            Updates.push("multimedia", multimediaDoc)
-                    );
+            @Override
+            public void onError(Throwable t) {
+                // La sesión se conserva para que el cliente pueda reanudar
+                System.err.println("Upload interrupted: " + t.getMessage());
+            }
 
-                    // Responder con el URL del archivo
-                    responseObserver.onNext(UploadResponse.newBuilder().setUrl(fileUrl).build());
-                    responseObserver.onCompleted();
+            @Override
+            public void onCompleted() {
+                if (failed) return;
 
-                } catch (Exception e) {
-                    System.err.println("Upload failed: " + e.getMessage());
-                    responseObserver.onError(e);
+                if (session == null) {
+                    responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("No chunks received").asRuntimeException());
+                    return;
                 }
+
+                responseObserver.onNext(toUploadSession(session));
+                responseObserver.onCompleted();
+            }
+
+            private void fail(Status status) {
+                failed = true;
+                responseObserver.onError(status.asRuntimeException());
             }
         };
     }
 
+    @Override
+    public void getUploadStatus(UploadStatusRequest request, StreamObserver<UploadSession> responseObserver) {
+        UploadSessionManager.Session session = uploadSessions.get(request.getUploadId());
+        if (session == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Upload session not found: " + request.getUploadId())
+                    .asRuntimeException());
+            return;
+        }
+
+        responseObserver.onNext(toUploadSession(session));
+        responseObserver.onCompleted();
+    }
 
     @Override
-    public void getMultimedia(GetMultimediaRequest request, StreamObserver<GetMultimediaResponse> responseObserver) {
+    public void completeUpload(CompleteUploadRequest request, StreamObserver<CompleteUploadResponse> responseObserver) {
+        UploadSessionManager.Session session = uploadSessions.get(request.getUploadId());
+        if (session == null) {
+            responseObserver.onError(Status.NOT_FOUND
+                    .withDescription("Upload session not found: " + request.getUploadId())
+                    .asRuntimeException());
+            return;
+        }
+
+        if (!request.getProof().isEmpty()) {
+            completeWithProof(session, request.getProof(), responseObserver);
+            return;
+        }
+
         try {
-            MongoConnection.connect();
-            MongoCollection<Document> postsCollection = MongoConnection.getDatabase().getCollection("posts");
+            StoredBlob blob;
+            synchronized (session) {
+                if (session.totalSize > 0 && session.committedOffset() != session.totalSize) {
+                    responseObserver.onError(Status.FAILED_PRECONDITION
+                            .withDescription("Upload incomplete: " + session.committedOffset() + " of " + session.totalSize + " bytes")
+                            .asRuntimeException());
+                    return;
+                }
+
+                blob = session.writer.commit();
+                uploadSessions.remove(session);
+            }
 
-            String postId = request.getPostId();
-            if (postId == null || postId.isEmpty()) {
-                responseObserver.onError(new IllegalArgumentException("Post ID is required"));
+            if (!request.getSha256().isEmpty() && !request.getSha256().equalsIgnoreCase(blob.getSha256())) {
+                blobReclaimer.releaseCreated(blob);
+                responseObserver.onError(Status.DATA_LOSS
+                        .withDescription("Checksum mismatch, expected " + request.getSha256() + " but got " + blob.getSha256())
+                        .asRuntimeException());
                 return;
             }
 
-            Document post = postsCollection.find(Filters.eq("_id", new org.bson.types.ObjectId(postId))).first();
+            pushMultimedia(session.postId, session.filename, session.contentType, blob).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    blobReclaimer.releaseCreated(blob);
+                    System.err.println("Upload failed: " + error.getMessage());
+                    responseObserver.onError(metadataError(error));
+                    return;
+                }
 
-            if (post == null) {
-                responseObserver.onError(new IllegalArgumentException("Post not found with ID: " + postId));
-                return;
+                previewGenerator.submit(session.postId, blob.getSha256(), session.contentType, blob.getKey());
+
+                responseObserver.onNext(CompleteUploadResponse.newBuilder()
+                        .setUrl(blob.getKey())
+                        .setSha256(blob.getSha256())
+                        .setSize(blob.getSize())
+                        .setDeduplicated(blob.isDeduplicated())
+                        .build());
+                responseObserver.onCompleted();
+            });
+
+        } catch (Exception e) {
+            System.err.println("Upload failed: " + e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription("Could not complete upload").withCause(e).asRuntimeException());
+        }
+    }
+
+    // El contenido ya está guardado; solo se registra si el cliente demuestra que lo tiene
+    private void completeWithProof(UploadSessionManager.Session session, String proof,
+                                   StreamObserver<CompleteUploadResponse> responseObserver) {
+        try {
+            StoredBlob blob;
+            synchronized (session) {
+                UploadSessionManager.ProofChallenge challenge = session.challenge;
+                if (challenge == null) {
+                    responseObserver.onError(Status.FAILED_PRECONDITION
+                            .withDescription("Upload session has no pending proof challenge")
+                            .asRuntimeException());
+                    return;
+                }
+                // Un solo intento por reto; después queda subir el archivo
+                session.challenge = null;
+
+                // find renueva la fecha de uso del blob para que el reclaimer no lo tome mientras se registra
+                blob = blobStore.find(challenge.blob.getSha256());
+                if (blob == null) {
+                    responseObserver.onError(Status.FAILED_PRECONDITION
+                            .withDescription("Content is no longer stored, upload it instead")
+                            .asRuntimeException());
+                    return;
+                }
+                if (!challenge.verify(blobStore, proof)) {
+                    Metrics.increment("upload.proof_rejected");
+                    responseObserver.onError(Status.PERMISSION_DENIED
+                            .withDescription("Proof of possession does not match")
+                            .asRuntimeException());
+                    return;
+                }
+
+                session.writer.abort();
+                uploadSessions.remove(session);
             }
 
-            List<Document> multimediaList = post.getList("multimedia", Document.class);
+            pushMultimedia(session.postId, session.filename, session.contentType, blob).whenComplete((ignored, error) -> {
+                if (error != null) {
+                    System.err.println("Upload failed: " + error.getMessage());
+                    responseObserver.onError(metadataError(error));
+                    return;
+                }
 
-            GetMultimediaResponse.Builder responseBuilder = GetMultimediaResponse.newBuilder();
+                previewGenerator.submit(session.postId, blob.getSha256(), session.contentType, blob.getKey());
 
-            if (multimediaList != null && !multimediaList.isEmpty()) {
-                for (Document multimediaDoc : multimediaList) {
-                    MultimediaItem.Builder itemBuilder = MultimediaItem.newBuilder();
+                responseObserver.onNext(CompleteUploadResponse.newBuilder()
+                        .setUrl(blob.getKey())
+                        .setSha256(blob.getSha256())
+                        .setSize(blob.getSize())
+                        .setDeduplicated(true)
+                        .build());
+                responseObserver.onCompleted();
+            });
 
-                    if (multimediaDoc.containsKey("filename")) {
-                        itemBuilder.setFilename(multimediaDoc.getString("filename"));
-                    }
-                    if (multimediaDoc.containsKey("original_filename")) {
-                        itemBuilder.setOriginalFilename(multimediaDoc.getString("original_filename"));
-                    }
-                    if (multimediaDoc.containsKey("content_type")) {
-                        itemBuilder.setContentType(multimediaDoc.getString("content_type"));
-                    }
-                    if (multimediaDoc.containsKey("file_url")) {
-                        String fileUrl = multimediaDoc.getString("file_url");
-                        itemBuilder.setFileUrl(fileUrl);
-
-                        // Leer el archivo y convertirlo a bytes
-                        try {
-                            File file = new File(fileUrl);
-                            if (file.exists() && file.isFile()) {
-                                byte[] fileBytes = Files.readAllBytes(file.toPath());
-                                itemBuilder.setData(ByteString.copyFrom(fileBytes));
-                            } else {
-                                System.err.println("File not found: " + fileUrl);
-                                // Puedes decidir si quieres enviar un error o simplemente continuar sin los datos
-                                // itemBuilder.setData(ByteString.EMPTY);
+        } catch (Exception e) {
+            System.err.println("Upload failed: " + e.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription("Could not complete upload").withCause(e).asRuntimeException());
+        }
+    }
+
+    private static UploadSession toUploadSession(UploadSessionManager.Session session) {
+        UploadSession.Builder builder = UploadSession.newBuilder()
+                .setUploadId(session.uploadId)
+                .setCommittedOffset(session.committedOffset())
+                .setTotalSize(session.totalSize);
+
+        UploadSessionManager.ProofChallenge challenge = session.challenge;
+        if (challenge != null) {
+            builder.setProofRange(ByteRange.newBuilder().setOffset(challenge.offset).setLength(challenge.length))
+                    .setProofNonce(ByteString.copyFrom(challenge.nonce));
+        }
+        return builder.build();
+    }
+
+    @Override
+    public StreamObserver<UploadBatchRequest> uploadBatch(StreamObserver<UploadBatchResponse> responseObserver) {
+        return new BatchUploadObserver(this, blobStore, previewGenerator, blobReclaimer, requestManually(responseObserver));
+    }
+
+    // Control de flujo manual: los mensajes se piden de uno en uno conforme se escriben, así un disco
+    // lento frena al cliente (vía la ventana de HTTP/2) en vez de acumular chunks en memoria
+    private static <T> ServerCallStreamObserver<T> requestManually(StreamObserver<T> responseObserver) {
+        ServerCallStreamObserver<T> serverObserver = (ServerCallStreamObserver<T>) responseObserver;
+        serverObserver.disableAutoRequest();
+        serverObserver.request(1);
+        return serverObserver;
+    }
+
+    // Un NOT_FOUND del batcher (el post no existe) llega tal cual al cliente; lo demás es INTERNAL
+    static StatusRuntimeException metadataError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof StatusRuntimeException) return (StatusRuntimeException) cause;
+        return Status.INTERNAL.withDescription("Could not save multimedia metadata").withCause(cause).asRuntimeException();
+    }
+
+    private CompletableFuture<Void> pushMultimedia(String postId, String originalFilename, String contentType, StoredBlob blob) {
+        return pushMultimedia(postId, List.of(multimediaDocument(originalFilename, contentType, blob)));
+    }
+
+    // Los metadatos pasan por el batcher, que junta las escrituras de uploads concurrentes
+    CompletableFuture<Void> pushMultimedia(String postId, List<Document> multimediaDocs) {
+        return writeBatcher.push(postId, multimediaDocs).thenRun(() -> multimediaAdded.accept(postId));
+    }
+
+    static Document multimediaDocument(String originalFilename, String contentType, StoredBlob blob) {
+        // Crear documento multimedia
+        return PreviewGenerator.markPending(new Document()
+                .append("filename", uniqueFilename(originalFilename))
+                .append("original_filename", originalFilename)
+                .append("content_type", contentType)
+                .append("file_url", blob.getKey())
+                .append("sha256", blob.getSha256())
+                .append("size", blob.getSize())
+                .append("uploaded_at", Instant.now().toString()), contentType);
+    }
+
+    // Generar un nombre de archivo seguro y único
+    private static String uniqueFilename(String originalFilename) {
+        String safeFilename = originalFilename.replaceAll("[^a-zA-Z0-9\\.\\-_]", "_");
+        String timestamp = String.valueOf(Instant.now().toEpochMilli());
+        String fileExtension = "";
+
+        int dotIndex = safeFilename.lastIndexOf('.');
+        if (dotIndex >= 0) {
+            fileExtension = safeFilename.substring(dotIndex);
+            safeFilename = safeFilename.substring(0, dotIndex);
+        }
+
+        return safeFilename + "_" + timestamp + fileExtension;
+    }
+
+    @Override
+    public void getMultimedia(GetMultimediaRequest request, StreamObserver<GetMultimediaResponse> responseObserver) {
+        selectMultimedia(request).thenAccept(multimediaList -> {
+            boolean includeData = !request.hasIncludeData() || request.getIncludeData();
+
+            GetMultimediaResponse.Builder responseBuilder = GetMultimediaResponse.newBuilder();
+
+            for (Document multimediaDoc : multimediaList) {
+                MultimediaItem.Builder itemBuilder = toItemMetadata(multimediaDoc);
+
+                // En modo solo-metadatos no se toca el disco; si el cliente ya tiene esta versión, tampoco
+                if (includeData && multimediaDoc.containsKey("file_url") && isKnown(request, itemBuilder)) {
+                    itemBuilder.setNotModified(true);
+                    Metrics.increment("media.not_modified");
+                } else if (includeData && multimediaDoc.containsKey("file_url")) {
+                    String fileUrl = multimediaDoc.getString("file_url");
+                    ByteRange range = request.getRangesOrDefault(itemBuilder.getFilename(), ByteRange.getDefaultInstance());
+
+                    try {
+                        ByteBuffer cached = mediaCache.get(multimediaDoc, blobStore);
+                        if (cached != null) {
+                            sliceRange(cached, range, itemBuilder);
+                        } else {
+                            // Leer solo el rango pedido del archivo
+                            try (SeekableByteChannel channel = blobStore.open(fileUrl)) {
+                                long start = System.nanoTime();
+                                readRange(channel, range, itemBuilder);
+                                Metrics.recordOperation("disk.read", request.getPostId(), System.nanoTime() - start);
                             }
-                        } catch (IOException e) {
-                            System.err.println("Error reading file: " + fileUrl + " - " + e.getMessage());
                         }
+                    } catch (NoSuchFileException e) {
+                        itemBuilder.setMissing(true);
+                        Metrics.increment("media.missing");
+                        System.err.println("Multimedia file not found for post " + request.getPostId() + ": " + fileUrl);
+                    } catch (IOException e) {
+                        Metrics.increment("media.read_error");
+                        System.err.println("Error reading multimedia of post " + request.getPostId() + ": " + fileUrl + " - " + e.getMessage());
                     }
-                    if (multimediaDoc.containsKey("uploaded_at")) {
-                        itemBuilder.setUploadedAt(multimediaDoc.getString("uploaded_at"));
-                    }
-
-                    responseBuilder.addMultimediaItems(itemBuilder.build());
                 }
+
+                responseBuilder.addMultimediaItems(itemBuilder.build());
             }
 
             responseObserver.onNext(responseBuilder.build());
             responseObserver.onCompleted();
+        }).exceptionally(error -> failRetrieval(responseObserver, error));
+    }
 
-        } catch (IllegalArgumentException e) {
-            responseObserver.onError(e);
-        } catch (Exception e) {
-            System.err.println("Error retrieving multimedia: " + e.getMessage());
-            responseObserver.onError(new RuntimeException("Internal server error while retrieving multimedia", e));
+    @Override
+    public void streamMultimedia(GetMultimediaRequest request, StreamObserver<MultimediaChunk> responseObserver) {
+        // El envío avanza solo cuando el transporte está listo, así la memoria queda acotada a un chunk.
+        // Los handlers se registran aquí mismo: la consulta puede terminar en otro hilo cuando este
+        // método ya regresó, y para entonces gRPC ya no permite registrarlos
+        MultimediaStreamer streamer = new MultimediaStreamer(
+                blobStore, mediaCache, request, (ServerCallStreamObserver<MultimediaChunk>) responseObserver);
+        streamer.start();
+
+        selectMultimedia(request).thenAccept(streamer::begin).exceptionally(error -> {
+            streamer.fail(retrievalError(error));
+            return null;
+        });
+    }
+
+    private static Void failRetrieval(StreamObserver<?> responseObserver, Throwable error) {
+        responseObserver.onError(retrievalError(error));
+        return null;
+    }
+
+    private static Throwable retrievalError(Throwable error) {
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        if (cause instanceof IllegalArgumentException) {
+            return cause;
+        }
+        System.err.println("Error retrieving multimedia: " + cause.getMessage());
+        return new RuntimeException("Internal server error while retrieving multimedia", cause);
+    }
+
+    private CompletableFuture<List<Document>> selectMultimedia(GetMultimediaRequest request) {
+        return findMultimedia(request.getPostId()).thenApply(multimediaList -> {
+            List<Document> selected = new ArrayList<>();
+            for (Document multimediaDoc : multimediaList) {
+                if (request.getFilenamesCount() == 0 || request.getFilenamesList().contains(multimediaDoc.getString("filename"))) {
+                    selected.add(servedVariant(multimediaDoc, request.getPreviewSize()));
+                }
+            }
+            return selected;
+        });
+    }
+
+    // Con preview_size se sirve la preview más pequeña que alcance ese tamaño; si ninguna
+    // alcanza (o la imagen no tiene previews), se sirve el original
+    static Document servedVariant(Document multimediaDoc, int previewSize) {
+        List<Document> previews = multimediaDoc.getList("previews", Document.class);
+        if (previewSize <= 0 || previews == null) {
+            return multimediaDoc;
+        }
+
+        for (Document preview : previews) {
+            if (preview.getInteger("dimension", 0) >= previewSize) {
+                return new Document(multimediaDoc)
+                        .append("content_type", preview.getString("content_type"))
+                        .append("file_url", preview.getString("file_url"))
+                        .append("sha256", preview.getString("sha256"))
+                        .append("size", preview.get("size"))
+                        .append("served_preview", preview.getInteger("dimension"));
+            }
+        }
+        return multimediaDoc;
+    }
+
+    // Solo se leen del disco los bytes del rango
+    static void readRange(SeekableByteChannel channel, ByteRange range, MultimediaItem.Builder itemBuilder) throws IOException {
+        long size = channel.size();
+        long start = Math.min(Math.max(range.getOffset(), 0), size);
+        long end = rangeEnd(range, start, size);
+
+        ByteBuffer buffer = ByteBuffer.allocate(Math.toIntExact(end - start));
+        channel.position(start);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer) < 0) break;
+        }
+        buffer.flip();
+
+        itemBuilder.setSize(size)
+                .setOffset(start)
+                .setData(UnsafeByteOperations.unsafeWrap(buffer));
+    }
+
+    // Igual que readRange pero sobre el archivo completo en caché: el rango es una vista del buffer
+    static void sliceRange(ByteBuffer content, ByteRange range, MultimediaItem.Builder itemBuilder) {
+        int size = content.remaining();
+        int start = (int) Math.min(Math.max(range.getOffset(), 0), size);
+        int end = (int) rangeEnd(range, start, size);
+
+        ByteBuffer slice = content.duplicate();
+        slice.position(start).limit(end);
+
+        itemBuilder.setSize(size)
+                .setOffset(start)
+                .setData(UnsafeByteOperations.unsafeWrap(slice.slice()));
+    }
+
+    // El ETag es el sha256 del contenido servido; sin hash no hay forma de saber si cambió
+    static boolean isKnown(GetMultimediaRequest request, MultimediaItem.Builder itemBuilder) {
+        return !itemBuilder.getEtag().isEmpty() && request.getKnownEtagsList().contains(itemBuilder.getEtag());
+    }
+
+    static long rangeEnd(ByteRange range, long start, long size) {
+        if (range.getLength() <= 0) return size;
+        return Math.min(size, start + range.getLength());
+    }
+
+    private CompletableFuture<List<Document>> findMultimedia(String postId) {
+        if (postId == null || postId.isEmpty()) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Post ID is required"));
+        }
+        if (!ObjectId.isValid(postId)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid post ID: " + postId));
+        }
+
+        long start = System.nanoTime();
+        return posts.findById(new ObjectId(postId), MULTIMEDIA_PROJECTION).thenApply(post -> {
+            Metrics.recordOperation("mongo.find", postId, System.nanoTime() - start);
+
+            if (post == null) {
+                throw new IllegalArgumentException("Post not found with ID: " + postId);
+            }
+
+            List<Document> multimediaList = post.getList("multimedia", Document.class);
+            return multimediaList != null ? multimediaList : Collections.<Document>emptyList();
+        });
+    }
+
+    static MultimediaItem.Builder toItemMetadata(Document multimediaDoc) {
+        MultimediaItem.Builder itemBuilder = MultimediaItem.newBuilder();
+
+        if (multimediaDoc.containsKey("filename")) {
+            itemBuilder.setFilename(multimediaDoc.getString("filename"));
+        }
+        if (multimediaDoc.containsKey("original_filename")) {
+            itemBuilder.setOriginalFilename(multimediaDoc.getString("original_filename"));
+        }
+        if (multimediaDoc.containsKey("content_type")) {
+            itemBuilder.setContentType(multimediaDoc.getString("content_type"));
+        }
+        if (multimediaDoc.containsKey("file_url")) {
+            itemBuilder.setFileUrl(multimediaDoc.getString("file_url"));
+        }
+        if (multimediaDoc.containsKey("uploaded_at")) {
+            itemBuilder.setUploadedAt(multimediaDoc.getString("uploaded_at"));
         }
+        if (multimediaDoc.containsKey("size")) {
+            itemBuilder.setSize(((Number) multimediaDoc.get("size")).longValue());
+        }
+        if (multimediaDoc.getString("sha256") != null) {
+            itemBuilder.setEtag(multimediaDoc.getString("sha256"));
+        }
+        if (multimediaDoc.containsKey("served_preview")) {
+            itemBuilder.setPreviewSize(multimediaDoc.getInteger("served_preview"));
+        }
+        List<Document> previews = multimediaDoc.getList("previews", Document.class);
+        if (previews != null) {
+            for (Document preview : previews) {
+                itemBuilder.addPreviewSizes(preview.getInteger("dimension", 0));
+            }
+        }
+
+        return itemBuilder;
     }
-}
\ No newline at end of file
+}
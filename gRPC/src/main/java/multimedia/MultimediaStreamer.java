@@ -0,0 +1,193 @@
+package multimedia;
+
+import com.google.protobuf.UnsafeByteOperations;
+import com.proto.multimedia.ByteRange;
+import com.proto.multimedia.GetMultimediaRequest;
+import com.proto.multimedia.MultimediaChunk;
+import com.proto.multimedia.MultimediaItem;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import metrics.Metrics;
+import org.bson.Document;
+import storage.BlobStore;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.List;
+
+// Envía los archivos de un post como una secuencia de chunks: primero los metadatos de cada
+// archivo y después su contenido en bloques de CHUNK_SIZE, respetando el control de flujo de gRPC.
+// Los handlers se registran en start(), dentro del handler de la llamada (gRPC no permite hacerlo
+// después); la lista de archivos llega más tarde con begin(), cuando termina la consulta a Mongo.
+// drain() puede correr en el hilo del callback de Mongo y en el de la llamada a la vez, por eso
+// todo lo que toca el stream está sincronizado.
+class MultimediaStreamer {
+
+    static final int CHUNK_SIZE = 64 * 1024;
+
+    private final BlobStore blobStore;
+    private final MediaCache mediaCache;
+    private final GetMultimediaRequest request;
+    private final boolean includeData;
+    private final ServerCallStreamObserver<MultimediaChunk> responseObserver;
+
+    private List<Document> multimediaList;
+    private int itemIndex = 0;
+    private SeekableByteChannel channel;
+    private ByteBuffer cached;
+    private long position;
+    private long end;
+    private boolean finished;
+
+    MultimediaStreamer(BlobStore blobStore, MediaCache mediaCache, GetMultimediaRequest request,
+                       ServerCallStreamObserver<MultimediaChunk> responseObserver) {
+        this.blobStore = blobStore;
+        this.mediaCache = mediaCache;
+        this.request = request;
+        this.includeData = !request.hasIncludeData() || request.getIncludeData();
+        this.responseObserver = responseObserver;
+    }
+
+    // Debe llamarse antes de que regrese el handler de la llamada
+    void start() {
+        responseObserver.setOnCancelHandler(this::cancel);
+        responseObserver.setOnReadyHandler(this::drain);
+    }
+
+    // Instala los archivos a enviar y empieza el envío
+    synchronized void begin(List<Document> multimediaList) {
+        this.multimediaList = multimediaList;
+        drain();
+    }
+
+    // La consulta falló antes de enviar nada
+    synchronized void fail(Throwable error) {
+        if (finished) return;
+        finished = true;
+        responseObserver.onError(error);
+    }
+
+    private synchronized void cancel() {
+        finished = true;
+        closeChannel();
+    }
+
+    private synchronized void drain() {
+        if (multimediaList == null) return;
+        try {
+            while (!finished && responseObserver.isReady()) {
+                if (channel == null && cached == null) {
+                    if (itemIndex >= multimediaList.size()) {
+                        finished = true;
+                        responseObserver.onCompleted();
+                        return;
+                    }
+                    openItem(multimediaList.get(itemIndex));
+                    continue;
+                }
+
+                if (position >= end) {
+                    closeChannel();
+                    itemIndex++;
+                    continue;
+                }
+
+                if (cached != null) {
+                    // Desde la caché: cada chunk es una vista del buffer, sin copias
+                    int length = (int) Math.min(CHUNK_SIZE, end - position);
+                    ByteBuffer slice = cached.duplicate();
+                    slice.position((int) position).limit((int) position + length);
+                    position += length;
+
+                    responseObserver.onNext(MultimediaChunk.newBuilder()
+                            .setItemIndex(itemIndex)
+                            .setData(UnsafeByteOperations.unsafeWrap(slice.slice()))
+                            .build());
+                    continue;
+                }
+
+                long start = System.nanoTime();
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(CHUNK_SIZE, end - position));
+                channel.position(position);
+                while (buffer.hasRemaining()) {
+                    int read = channel.read(buffer);
+                    if (read < 0) break;
+                }
+                Metrics.recordOperation("disk.read", request.getPostId(), System.nanoTime() - start);
+                buffer.flip();
+
+                if (!buffer.hasRemaining()) {
+                    // El archivo se truncó mientras se enviaba
+                    position = end;
+                    continue;
+                }
+                position += buffer.remaining();
+
+                responseObserver.onNext(MultimediaChunk.newBuilder()
+                        .setItemIndex(itemIndex)
+                        .setData(UnsafeByteOperations.unsafeWrap(buffer))
+                        .build());
+            }
+        } catch (IOException e) {
+            Metrics.increment("media.read_error");
+            System.err.println("Error streaming multimedia of post " + request.getPostId() + ": " + e.getMessage());
+            finished = true;
+            closeChannel();
+            responseObserver.onError(Status.INTERNAL
+                    .withDescription("Error reading multimedia file")
+                    .withCause(e)
+                    .asRuntimeException());
+        }
+    }
+
+    private void openItem(Document multimediaDoc) throws IOException {
+        MultimediaItem.Builder metadata = MultimediaServerImplementation.toItemMetadata(multimediaDoc);
+        String fileUrl = multimediaDoc.getString("file_url");
+
+        // En modo solo-metadatos no se abre ningún archivo, ni tampoco si el cliente ya tiene esta versión
+        if (includeData && fileUrl != null && MultimediaServerImplementation.isKnown(request, metadata)) {
+            metadata.setNotModified(true);
+            Metrics.increment("media.not_modified");
+        } else if (includeData && fileUrl != null) {
+            try {
+                cached = mediaCache.get(multimediaDoc, blobStore);
+                if (cached == null) {
+                    channel = blobStore.open(fileUrl);
+                }
+                long size = cached != null ? cached.remaining() : channel.size();
+                ByteRange range = request.getRangesOrDefault(metadata.getFilename(), ByteRange.getDefaultInstance());
+                position = Math.min(Math.max(range.getOffset(), 0), size);
+                end = MultimediaServerImplementation.rangeEnd(range, position, size);
+                metadata.setSize(size).setOffset(position);
+            } catch (NoSuchFileException e) {
+                // Se avisa en el ítem para que el cliente no lo confunda con un archivo vacío
+                metadata.setMissing(true);
+                Metrics.increment("media.missing");
+                System.err.println("Multimedia file not found for post " + request.getPostId() + ": " + fileUrl);
+            }
+        }
+
+        responseObserver.onNext(MultimediaChunk.newBuilder()
+                .setItemIndex(itemIndex)
+                .setMetadata(metadata)
+                .build());
+
+        if (channel == null && cached == null) {
+            itemIndex++;
+        }
+    }
+
+    private void closeChannel() {
+        cached = null;
+        if (channel == null) return;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // Ya se envió todo lo que se leyó; solo se cuenta
+            Metrics.increment("media.close_error");
+        }
+        channel = null;
+    }
+}
@@ -0,0 +1,185 @@
+package multimedia;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.Updates;
+import com.mongodb.client.model.WriteModel;
+import config.Settings;
+import dataaccess.PostRepository;
+import io.grpc.Status;
+import metrics.Metrics;
+import org.bson.Document;
+import org.bson.types.ObjectId;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// Agrupa los $push de metadatos multimedia de uploads concurrentes: junta lo que llega durante
+// unos milisegundos (o hasta maxBatchSize) y lo escribe con un solo bulkWrite no ordenado.
+// Cada llamador recibe un future que se completa cuando su propia escritura fue confirmada, o falla
+// con NOT_FOUND si el post no existe.
+class MultimediaWriteBatcher {
+
+    private final PostRepository posts;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final BlockingQueue<PendingPush> queue = new LinkedBlockingQueue<>();
+
+    MultimediaWriteBatcher(PostRepository posts) {
+        this(posts,
+                Settings.getInt("questhub.mongo.batch.max-size", 128),
+                Settings.getLong("questhub.mongo.batch.max-delay-ms", 5));
+    }
+
+    MultimediaWriteBatcher(PostRepository posts, int maxBatchSize, long maxDelayMillis) {
+        this.posts = posts;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+
+        Thread flusher = new Thread(this::run, "multimedia-write-batcher");
+        flusher.setDaemon(true);
+        flusher.start();
+    }
+
+    CompletableFuture<Void> push(String postId, List<Document> multimediaDocs) {
+        if (!ObjectId.isValid(postId)) {
+            return CompletableFuture.failedFuture(new IllegalArgumentException("Invalid post ID: " + postId));
+        }
+
+        PendingPush pending = new PendingPush(postId, multimediaDocs);
+        queue.add(pending);
+        return pending.result;
+    }
+
+    private void run() {
+        List<PendingPush> batch = new ArrayList<>();
+        while (true) {
+            try {
+                batch.add(queue.take());
+
+                // Esperar un poco a que lleguen más escrituras, sin pasar del límite
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) break;
+                    PendingPush next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    batch.add(next);
+                }
+                queue.drainTo(batch, maxBatchSize - batch.size());
+
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                System.err.println("Multimedia write batch failed: " + e.getMessage());
+                batch.forEach(pending -> pending.result.completeExceptionally(e));
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingPush> batch) {
+        // Las escrituras al mismo post se combinan en un solo $push con $each
+        Map<String, List<PendingPush>> byPost = new LinkedHashMap<>();
+        for (PendingPush pending : batch) {
+            byPost.computeIfAbsent(pending.postId, k -> new ArrayList<>()).add(pending);
+        }
+
+        List<WriteModel<Document>> models = new ArrayList<>();
+        List<List<PendingPush>> owners = new ArrayList<>();
+        for (Map.Entry<String, List<PendingPush>> entry : byPost.entrySet()) {
+            List<Document> docs = new ArrayList<>();
+            entry.getValue().forEach(pending -> docs.addAll(pending.multimediaDocs));
+
+            models.add(new UpdateOneModel<>(
+                    Filters.eq("_id", new ObjectId(entry.getKey())),
+                    Updates.pushEach("multimedia", docs)));
+            owners.add(entry.getValue());
+        }
+
+        long start = System.nanoTime();
+        List<BulkWriteError> errors = List.of();
+        BulkWriteResult result;
+        try {
+            // El flusher es un hilo propio, así que esperar aquí no bloquea ningún handler de gRPC
+            result = posts.bulkWrite(models, new BulkWriteOptions().ordered(false)).join();
+        } catch (CompletionException e) {
+            if (!(e.getCause() instanceof MongoBulkWriteException)) throw e;
+            MongoBulkWriteException bulkError = (MongoBulkWriteException) e.getCause();
+            if (bulkError.getWriteConcernError() != null) throw bulkError;
+            errors = bulkError.getWriteErrors();
+            result = bulkError.getWriteResult();
+        }
+        long flushNanos = System.nanoTime() - start;
+
+        Metrics.record("batcher.batch_size", batch.size());
+        Metrics.recordLatency("batcher.flush", flushNanos);
+
+        for (BulkWriteError error : errors) {
+            RuntimeException failure = new IllegalStateException(error.getMessage());
+            owners.get(error.getIndex()).forEach(pending -> pending.result.completeExceptionally(failure));
+        }
+
+        // El resultado de un bulkWrite solo trae el total de coincidencias; si falta alguna, se consulta
+        // qué posts existen para que una subida a un post borrado no se confirme como exitosa
+        if (result.getMatchedCount() < models.size() - errors.size()) {
+            Set<ObjectId> existing = existingPosts(byPost.keySet());
+            for (List<PendingPush> group : owners) {
+                String postId = group.get(0).postId;
+                if (existing.contains(new ObjectId(postId))) continue;
+
+                RuntimeException notFound = Status.NOT_FOUND.withDescription("Post not found with ID: " + postId).asRuntimeException();
+                group.forEach(pending -> pending.result.completeExceptionally(notFound));
+            }
+        }
+
+        long now = System.nanoTime();
+        for (List<PendingPush> group : owners) {
+            for (PendingPush pending : group) {
+                Metrics.recordOperation("mongo.update", pending.postId, now - pending.enqueuedAt);
+                pending.result.complete(null);
+            }
+        }
+    }
+
+    private Set<ObjectId> existingPosts(Set<String> postIds) {
+        List<ObjectId> ids = new ArrayList<>();
+        postIds.forEach(postId -> ids.add(new ObjectId(postId)));
+
+        Set<ObjectId> existing = new HashSet<>();
+        posts.find(Filters.in("_id", ids), Projections.include("_id"), null, 0, ids.size(), document -> {
+            existing.add(document.getObjectId("_id"));
+            return true;
+        }).join();
+        return existing;
+    }
+
+    private static class PendingPush {
+        final String postId;
+        final List<Document> multimediaDocs;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Void> result = new CompletableFuture<>();
+
+        PendingPush(String postId, List<Document> multimediaDocs) {
+            this.postId = postId;
+            this.multimediaDocs = multimediaDocs;
+        }
+    }
+}
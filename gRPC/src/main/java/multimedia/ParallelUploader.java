@@ -0,0 +1,320 @@
+package multimedia;
+
+import com.google.protobuf.UnsafeByteOperations;
+import com.proto.multimedia.MultimediaServiceGrpc;
+import com.proto.multimedia.UploadRequest;
+import com.proto.multimedia.UploadResponse;
+import config.Settings;
+import io.grpc.Channel;
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.MetadataUtils;
+
+import java.io.IOException;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+// Cliente reutilizable para subir muchos archivos por un mismo canal. Cada archivo se lee del disco
+// en chunks y solo se envía el siguiente cuando el stream está listo (isReady), así la memoria del
+// cliente no depende del tamaño del archivo. Hay un máximo de subidas simultáneas; las demás esperan
+// en cola. Los errores transitorios se reintentan con backoff exponencial, pero solo mientras el
+// servidor no pudo haber registrado el archivo.
+public class ParallelUploader implements AutoCloseable {
+
+    private static final Set<Status.Code> RETRYABLE = Set.of(
+            Status.Code.UNAVAILABLE, Status.Code.RESOURCE_EXHAUSTED, Status.Code.DEADLINE_EXCEEDED, Status.Code.ABORTED);
+
+    private final MultimediaServiceGrpc.MultimediaServiceStub stub;
+    private final int chunkSize;
+    private final int maxAttempts;
+    private final long initialBackoffMillis;
+    private final long maxBackoffMillis;
+    private final long attemptTimeoutSeconds;
+
+    private final Semaphore slots;
+    private final Queue<Task> pending = new ConcurrentLinkedQueue<>();
+    private final ScheduledExecutorService retryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "upload-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public ParallelUploader(Channel channel) {
+        this(channel, Settings.get("questhub.uploader.client-id", ""),
+                Settings.getInt("questhub.uploader.parallelism", 8),
+                Settings.getInt("questhub.uploader.chunk-bytes", 256 * 1024),
+                Settings.getInt("questhub.uploader.max-attempts", 5),
+                Settings.getLong("questhub.uploader.initial-backoff-ms", 200),
+                Settings.getLong("questhub.uploader.max-backoff-ms", 10000),
+                Settings.getLong("questhub.uploader.attempt-timeout-seconds", 300));
+    }
+
+    public ParallelUploader(Channel channel, String clientId, int parallelism, int chunkSize, int maxAttempts,
+                            long initialBackoffMillis, long maxBackoffMillis, long attemptTimeoutSeconds) {
+        MultimediaServiceGrpc.MultimediaServiceStub stub = MultimediaServiceGrpc.newStub(channel);
+        if (clientId != null && !clientId.isEmpty()) {
+            // El servidor aplica sus límites de admisión por cliente con este header
+            Metadata headers = new Metadata();
+            headers.put(UploadAdmissionInterceptor.CLIENT_ID_KEY, clientId);
+            stub = stub.withInterceptors(MetadataUtils.newAttachHeadersInterceptor(headers));
+        }
+        this.stub = stub;
+        this.slots = new Semaphore(parallelism);
+        this.chunkSize = chunkSize;
+        this.maxAttempts = maxAttempts;
+        this.initialBackoffMillis = initialBackoffMillis;
+        this.maxBackoffMillis = maxBackoffMillis;
+        this.attemptTimeoutSeconds = attemptTimeoutSeconds;
+    }
+
+    // Encola el archivo; el future se completa cuando el servidor confirma la subida o se agotan los intentos
+    public CompletableFuture<UploadResult> upload(String postId, Path file) {
+        Task task = new Task(postId, file);
+        pending.add(task);
+        dispatch();
+        return task.result;
+    }
+
+    public CompletableFuture<List<UploadResult>> uploadAll(String postId, List<Path> files) {
+        List<CompletableFuture<UploadResult>> uploads = new ArrayList<>();
+        for (Path file : files) {
+            uploads.add(upload(postId, file));
+        }
+        return CompletableFuture.allOf(uploads.toArray(new CompletableFuture[0]))
+                .thenApply(ignored -> uploads.stream().map(CompletableFuture::join).toList());
+    }
+
+    private void dispatch() {
+        while (slots.tryAcquire()) {
+            Task task = pending.poll();
+            if (task == null) {
+                slots.release();
+                // Otro hilo pudo encolar entre poll() y release()
+                if (pending.isEmpty()) return;
+                continue;
+            }
+            task.startAttempt();
+        }
+    }
+
+    static String contentTypeOf(Path file) {
+        try {
+            String contentType = Files.probeContentType(file);
+            if (contentType != null) return contentType;
+        } catch (IOException e) {
+            // Se intenta por la extensión
+        }
+        String guessed = URLConnection.guessContentTypeFromName(file.getFileName().toString());
+        return guessed != null ? guessed : "application/octet-stream";
+    }
+
+    @Override
+    public void close() {
+        retryScheduler.shutdownNow();
+    }
+
+    // Un archivo y sus intentos; ocupa un lugar de paralelismo hasta terminar, incluida la espera entre reintentos
+    private final class Task {
+        final String postId;
+        final Path file;
+        final CompletableFuture<UploadResult> result = new CompletableFuture<>();
+        int attempts;
+
+        Task(String postId, Path file) {
+            this.postId = postId;
+            this.file = file;
+        }
+
+        void startAttempt() {
+            attempts++;
+            try {
+                Attempt attempt = new Attempt(this, FileChannel.open(file, StandardOpenOption.READ));
+                stub.withDeadlineAfter(attemptTimeoutSeconds, TimeUnit.SECONDS).upload(attempt);
+            } catch (IOException e) {
+                finish(null, e);
+            }
+        }
+
+        void attemptFailed(Throwable error, boolean localFailure, boolean halfClosed) {
+            Status status = Status.fromThrowable(error);
+            Metadata trailers = Status.trailersFromThrowable(error);
+
+            // Después de onCompleted el servidor pudo guardar el archivo y agregarlo al post aunque la
+            // respuesta no llegara; repetir la subida lo duplicaría. El rechazo de admisión (el único que
+            // trae pushback) nunca le entrega el fin del stream al servicio, así que ese sí se reintenta.
+            boolean mayHaveCommitted = halfClosed
+                    && (trailers == null || trailers.get(UploadAdmissionInterceptor.RETRY_PUSHBACK_KEY) == null);
+
+            if (localFailure || mayHaveCommitted || !RETRYABLE.contains(status.getCode()) || attempts >= maxAttempts) {
+                finish(null, error);
+                return;
+            }
+
+            long delay = backoffMillis(attempts, trailers);
+            System.err.println("Subida de " + file.getFileName() + " falló (" + status.getCode() + "), reintento en " + delay + " ms");
+            retryScheduler.schedule(this::startAttempt, delay, TimeUnit.MILLISECONDS);
+        }
+
+        void finish(UploadResponse response, Throwable error) {
+            slots.release();
+            if (error != null) {
+                result.completeExceptionally(error);
+            } else {
+                result.complete(new UploadResult(file, response, attempts));
+            }
+            dispatch();
+        }
+    }
+
+    // Backoff exponencial con jitter; si el servidor sugirió un tiempo de espera, se respeta
+    private long backoffMillis(int attempt, Metadata trailers) {
+        long exponential = Math.min(maxBackoffMillis, initialBackoffMillis << Math.min(attempt - 1, 20));
+        long delay = ThreadLocalRandom.current().nextLong(exponential / 2, exponential + 1);
+
+        String pushback = trailers != null ? trailers.get(UploadAdmissionInterceptor.RETRY_PUSHBACK_KEY) : null;
+        if (pushback != null) {
+            try {
+                delay = Math.max(delay, Long.parseLong(pushback));
+            } catch (NumberFormatException e) {
+                // Se ignora una sugerencia mal formada
+            }
+        }
+        return delay;
+    }
+
+    // Un intento de subida: el primer mensaje lleva los metadatos y cada mensaje un chunk del archivo
+    private final class Attempt implements ClientResponseObserver<UploadRequest, UploadResponse> {
+        private final Task task;
+        private final FileChannel file;
+        private ClientCallStreamObserver<UploadRequest> requestStream;
+        private long position;
+        private boolean headerSent;
+        private boolean halfClosed;
+        private boolean finished;
+        private boolean localFailure;
+        private UploadResponse response;
+
+        Attempt(Task task, FileChannel file) {
+            this.task = task;
+            this.file = file;
+        }
+
+        @Override
+        public void beforeStart(ClientCallStreamObserver<UploadRequest> requestStream) {
+            this.requestStream = requestStream;
+            requestStream.setOnReadyHandler(this::sendChunks);
+        }
+
+        // Llamado cada vez que el transporte puede aceptar más datos
+        private void sendChunks() {
+            try {
+                while (!finished && requestStream.isReady()) {
+                    ByteBuffer buffer = ByteBuffer.allocate(chunkSize);
+                    int read = Math.max(file.read(buffer, position), 0);
+
+                    if (read == 0 && headerSent) {
+                        finished = true;
+                        halfClosed = true;
+                        closeFile();
+                        requestStream.onCompleted();
+                        return;
+                    }
+
+                    buffer.flip();
+                    position += read;
+                    UploadRequest.Builder request = UploadRequest.newBuilder().setData(UnsafeByteOperations.unsafeWrap(buffer));
+                    if (!headerSent) {
+                        request.setPostId(task.postId)
+                                .setFilename(task.file.getFileName().toString())
+                                .setContentType(contentTypeOf(task.file));
+                        headerSent = true;
+                    }
+                    requestStream.onNext(request.build());
+                }
+            } catch (IOException e) {
+                finished = true;
+                localFailure = true;
+                closeFile();
+                requestStream.cancel("Could not read " + task.file, e);
+            }
+        }
+
+        @Override
+        public void onNext(UploadResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        public void onError(Throwable error) {
+            finished = true;
+            closeFile();
+            task.attemptFailed(error, localFailure, halfClosed);
+        }
+
+        @Override
+        public void onCompleted() {
+            task.finish(response, null);
+        }
+
+        private void closeFile() {
+            try {
+                file.close();
+            } catch (IOException e) {
+                System.err.println("Could not close " + task.file + ": " + e.getMessage());
+            }
+        }
+    }
+
+    public static final class UploadResult {
+        private final Path file;
+        private final String url;
+        private final String sha256;
+        private final boolean deduplicated;
+        private final int attempts;
+
+        UploadResult(Path file, UploadResponse response, int attempts) {
+            this.file = file;
+            this.url = response != null ? response.getUrl() : "";
+            this.sha256 = response != null ? response.getSha256() : "";
+            this.deduplicated = response != null && response.getDeduplicated();
+            this.attempts = attempts;
+        }
+
+        public Path getFile() {
+            return file;
+        }
+
+        public String getUrl() {
+            return url;
+        }
+
+        public String getSha256() {
+            return sha256;
+        }
+
+        public boolean isDeduplicated() {
+            return deduplicated;
+        }
+
+        public int getAttempts() {
+            return attempts;
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package multimedia;
+
+import config.Settings;
+import metrics.Metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+// Contabilidad de uploads en curso: cuántos hay y cuántos bytes recibidos aún no llegan a disco,
+// en total y por cliente. Cuando se pasa un límite la carga se rechaza en vez de encolarse.
+public class UploadAdmission {
+
+    private final int maxConcurrent;
+    private final int maxConcurrentPerClient;
+    private final long maxBufferedBytes;
+    private final long maxBufferedBytesPerClient;
+    private final long retryAfterMillis;
+
+    private final Map<String, Usage> usageByClient = new HashMap<>();
+    private final Usage total = new Usage();
+
+    public UploadAdmission() {
+        this(Settings.getInt("questhub.upload.max-concurrent", 64),
+                Settings.getInt("questhub.upload.max-concurrent-per-client", 8),
+                Settings.getLong("questhub.upload.max-buffered-bytes", 256L * 1024 * 1024),
+                Settings.getLong("questhub.upload.max-buffered-bytes-per-client", 64L * 1024 * 1024),
+                Settings.getLong("questhub.upload.retry-after-ms", 1000));
+    }
+
+    public UploadAdmission(int maxConcurrent, int maxConcurrentPerClient,
+                           long maxBufferedBytes, long maxBufferedBytesPerClient, long retryAfterMillis) {
+        this.maxConcurrent = maxConcurrent;
+        this.maxConcurrentPerClient = maxConcurrentPerClient;
+        this.maxBufferedBytes = maxBufferedBytes;
+        this.maxBufferedBytesPerClient = maxBufferedBytesPerClient;
+        this.retryAfterMillis = retryAfterMillis;
+    }
+
+    long retryAfterMillis() {
+        return retryAfterMillis;
+    }
+
+    // Devuelve null si el cliente o el servidor ya tienen el máximo de uploads abiertos
+    synchronized Ticket tryAdmit(String clientId) {
+        Usage client = usageByClient.computeIfAbsent(clientId, k -> new Usage());
+        if (total.uploads >= maxConcurrent || client.uploads >= maxConcurrentPerClient) {
+            if (client.uploads == 0) usageByClient.remove(clientId);
+            Metrics.increment("upload.rejected.concurrency");
+            return null;
+        }
+
+        total.uploads++;
+        client.uploads++;
+        Metrics.gauge("upload.in_flight").set(total.uploads);
+        return new Ticket(clientId, client);
+    }
+
+    private synchronized boolean reserve(Usage client, long bytes) {
+        if (total.bufferedBytes + bytes > maxBufferedBytes || client.bufferedBytes + bytes > maxBufferedBytesPerClient) {
+            Metrics.increment("upload.rejected.buffered_bytes");
+            return false;
+        }
+
+        total.bufferedBytes += bytes;
+        client.bufferedBytes += bytes;
+        Metrics.gauge("upload.buffered_bytes").set(total.bufferedBytes);
+        return true;
+    }
+
+    private synchronized void release(Usage client, long bytes) {
+        total.bufferedBytes -= bytes;
+        client.bufferedBytes -= bytes;
+        Metrics.gauge("upload.buffered_bytes").set(total.bufferedBytes);
+    }
+
+    private synchronized void finish(String clientId, Usage client) {
+        total.uploads--;
+        client.uploads--;
+        if (client.uploads == 0 && client.bufferedBytes == 0) usageByClient.remove(clientId);
+        Metrics.gauge("upload.in_flight").set(total.uploads);
+    }
+
+    // Un upload admitido; se cierra una sola vez, cuando termina la llamada
+    final class Ticket {
+        private final String clientId;
+        private final Usage client;
+        private boolean closed;
+
+        private Ticket(String clientId, Usage client) {
+            this.clientId = clientId;
+            this.client = client;
+        }
+
+        boolean reserve(long bytes) {
+            return UploadAdmission.this.reserve(client, bytes);
+        }
+
+        void release(long bytes) {
+            UploadAdmission.this.release(client, bytes);
+        }
+
+        void close() {
+            synchronized (UploadAdmission.this) {
+                if (closed) return;
+                closed = true;
+                finish(clientId, client);
+            }
+        }
+    }
+
+    private static class Usage {
+        int uploads;
+        long bufferedBytes;
+    }
+}
@@ -0,0 +1,130 @@
+package multimedia;
+
+import com.google.protobuf.MessageLite;
+import io.grpc.ForwardingServerCall;
+import io.grpc.ForwardingServerCallListener;
+import io.grpc.Grpc;
+import io.grpc.Metadata;
+import io.grpc.ServerCall;
+import io.grpc.ServerCallHandler;
+import io.grpc.ServerInterceptor;
+import io.grpc.Status;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Control de admisión para los RPC de subida (los que reciben un stream del cliente). Las llamadas
+// que exceden los límites de UploadAdmission terminan de inmediato con RESOURCE_EXHAUSTED y un
+// tiempo sugerido de reintento en los trailers.
+public class UploadAdmissionInterceptor implements ServerInterceptor {
+
+    // Si el cliente no se identifica se usa su dirección IP
+    public static final Metadata.Key<String> CLIENT_ID_KEY = Metadata.Key.of("client-id", Metadata.ASCII_STRING_MARSHALLER);
+    // El cliente gRPC respeta esta clave al reintentar con una política de reintentos configurada
+    public static final Metadata.Key<String> RETRY_PUSHBACK_KEY = Metadata.Key.of("grpc-retry-pushback-ms", Metadata.ASCII_STRING_MARSHALLER);
+
+    private final UploadAdmission admission;
+
+    public UploadAdmissionInterceptor(UploadAdmission admission) {
+        this.admission = admission;
+    }
+
+    @Override
+    public <ReqT, RespT> ServerCall.Listener<ReqT> interceptCall(
+            ServerCall<ReqT, RespT> call,
+            Metadata headers,
+            ServerCallHandler<ReqT, RespT> next) {
+
+        if (call.getMethodDescriptor().getType().clientSendsOneMessage()) {
+            return next.startCall(call, headers);
+        }
+
+        String clientId = clientId(call, headers);
+        UploadAdmission.Ticket ticket = admission.tryAdmit(clientId);
+        if (ticket == null) {
+            reject(call, "Too many concurrent uploads");
+            return new ServerCall.Listener<>() {};
+        }
+
+        // Al rechazar a mitad del stream el servicio puede intentar cerrar la llamada otra vez
+        AtomicBoolean closed = new AtomicBoolean();
+        ServerCall<ReqT, RespT> guardedCall = new ForwardingServerCall.SimpleForwardingServerCall<>(call) {
+            @Override
+            public void close(Status status, Metadata trailers) {
+                if (closed.compareAndSet(false, true)) {
+                    ticket.close();
+                    super.close(status, trailers);
+                }
+            }
+        };
+
+        ServerCall.Listener<ReqT> listener = next.startCall(guardedCall, headers);
+
+        return new ForwardingServerCallListener.SimpleForwardingServerCallListener<>(listener) {
+            private boolean rejected;
+
+            @Override
+            public void onMessage(ReqT message) {
+                if (rejected) return;
+
+                // Los bytes cuentan desde que llegan hasta que el servicio termina de escribirlos
+                long bytes = message instanceof MessageLite ? ((MessageLite) message).getSerializedSize() : 0;
+                if (!ticket.reserve(bytes)) {
+                    rejected = true;
+                    if (closed.compareAndSet(false, true)) {
+                        ticket.close();
+                        reject(call, "Too many bytes buffered for uploads");
+                    }
+                    // El servicio lo ve como una cancelación y descarta lo que llevaba escrito
+                    super.onCancel();
+                    return;
+                }
+
+                try {
+                    super.onMessage(message);
+                } finally {
+                    ticket.release(bytes);
+                }
+            }
+
+            @Override
+            public void onHalfClose() {
+                if (!rejected) super.onHalfClose();
+            }
+
+            @Override
+            public void onCancel() {
+                ticket.close();
+                if (!rejected) super.onCancel();
+            }
+
+            @Override
+            public void onComplete() {
+                ticket.close();
+                super.onComplete();
+            }
+        };
+    }
+
+    private void reject(ServerCall<?, ?> call, String reason) {
+        long retryAfter = admission.retryAfterMillis();
+        Metadata trailers = new Metadata();
+        trailers.put(RETRY_PUSHBACK_KEY, Long.toString(retryAfter));
+        call.close(Status.RESOURCE_EXHAUSTED
+                .withDescription(reason + ", retry after " + retryAfter + " ms"), trailers);
+    }
+
+    private static String clientId(ServerCall<?, ?> call, Metadata headers) {
+        String clientId = headers.get(CLIENT_ID_KEY);
+        if (clientId != null && !clientId.isEmpty()) {
+            return clientId;
+        }
+
+        SocketAddress address = call.getAttributes().get(Grpc.TRANSPORT_ATTR_REMOTE_ADDR);
+        if (address instanceof InetSocketAddress) {
+            return ((InetSocketAddress) address).getHostString();
+        }
+        return String.valueOf(address);
+    }
+}
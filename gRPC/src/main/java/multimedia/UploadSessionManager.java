@@ -0,0 +1,164 @@
+package multimedia;
+
+import storage.BlobWriter;
+import storage.BlobStore;
+import storage.StoredBlob;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// Sesiones de subida reanudables: el archivo parcial y el hash incremental se conservan
+// entre conexiones hasta que el cliente completa la subida o la sesión expira.
+class UploadSessionManager {
+
+    private static final long SESSION_TTL_MILLIS = TimeUnit.HOURS.toMillis(1);
+    private static final int PROOF_LENGTH = 64 * 1024;
+
+    private final SecureRandom random = new SecureRandom();
+    private final BlobStore store;
+    private final long sessionTtlMillis;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    UploadSessionManager(BlobStore store) {
+        this(store, SESSION_TTL_MILLIS);
+    }
+
+    UploadSessionManager(BlobStore store, long sessionTtlMillis) {
+        this.store = store;
+        this.sessionTtlMillis = sessionTtlMillis;
+
+        ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "upload-session-cleaner");
+            thread.setDaemon(true);
+            return thread;
+        });
+        cleaner.scheduleWithFixedDelay(this::expireIdleSessions, 5, 5, TimeUnit.MINUTES);
+    }
+
+    Session start(String postId, String filename, String contentType, long totalSize) throws IOException {
+        Session session = new Session(UUID.randomUUID().toString(), postId, filename, contentType,
+                totalSize, store.newWriter());
+        sessions.put(session.uploadId, session);
+        return session;
+    }
+
+    // Para un hash que ya existe: la sesión es normal (el cliente puede subir el archivo), pero además
+    // trae un reto sobre un rango elegido al azar que solo responde quien tiene el contenido
+    Session startWithProof(String postId, String filename, String contentType, StoredBlob existing) throws IOException {
+        Session session = start(postId, filename, contentType, existing.getSize());
+
+        long length = Math.min(existing.getSize(), PROOF_LENGTH);
+        long offset = existing.getSize() > length ? random.nextLong(existing.getSize() - length + 1) : 0;
+        byte[] nonce = new byte[16];
+        random.nextBytes(nonce);
+        session.challenge = new ProofChallenge(existing, offset, length, nonce);
+        return session;
+    }
+
+    Session get(String uploadId) {
+        Session session = sessions.get(uploadId);
+        if (session != null) session.touch();
+        return session;
+    }
+
+    void remove(Session session) {
+        sessions.remove(session.uploadId);
+    }
+
+    void expireIdleSessions() {
+        long now = System.currentTimeMillis();
+        sessions.values().removeIf(session -> {
+            synchronized (session) {
+                if (now - session.lastActivity < sessionTtlMillis) return false;
+                session.writer.abort();
+                return true;
+            }
+        });
+    }
+
+    static class Session {
+        final String uploadId;
+        final String postId;
+        final String filename;
+        final String contentType;
+        final long totalSize;
+        final BlobWriter writer;
+        volatile ProofChallenge challenge;
+        private volatile long lastActivity = System.currentTimeMillis();
+
+        Session(String uploadId, String postId, String filename, String contentType, long totalSize, BlobWriter writer) {
+            this.uploadId = uploadId;
+            this.postId = postId;
+            this.filename = filename;
+            this.contentType = contentType;
+            this.totalSize = totalSize;
+            this.writer = writer;
+        }
+
+        long committedOffset() {
+            return writer.size();
+        }
+
+        void touch() {
+            lastActivity = System.currentTimeMillis();
+        }
+    }
+
+    static class ProofChallenge {
+        final StoredBlob blob;
+        final long offset;
+        final long length;
+        final byte[] nonce;
+
+        ProofChallenge(StoredBlob blob, long offset, long length, byte[] nonce) {
+            this.blob = blob;
+            this.offset = offset;
+            this.length = length;
+            this.nonce = nonce;
+        }
+
+        // sha256(nonce + bytes del rango), calculado sobre el blob guardado
+        boolean verify(BlobStore store, String proof) throws IOException {
+            MessageDigest digest = newDigest();
+            digest.update(nonce);
+            try (SeekableByteChannel channel = store.open(blob.getKey())) {
+                channel.position(offset);
+                ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(length, 8192));
+                long remaining = length;
+                while (remaining > 0) {
+                    buffer.clear().limit((int) Math.min(buffer.capacity(), remaining));
+                    int read = channel.read(buffer);
+                    if (read < 0) return false;
+                    buffer.flip();
+                    digest.update(buffer);
+                    remaining -= read;
+                }
+            }
+            byte[] expected = digest.digest();
+            try {
+                return MessageDigest.isEqual(expected, HexFormat.of().parseHex(proof.toLowerCase()));
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+
+        private static MessageDigest newDigest() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException("SHA-256 not available", e);
+            }
+        }
+    }
+}
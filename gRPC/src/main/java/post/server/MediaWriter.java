@@ -0,0 +1,69 @@
+package post.server;
+
+import com.google.protobuf.ByteString;
+import config.Settings;
+import metrics.Metrics;
+import storage.BlobStore;
+import storage.StoredBlob;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.reflect.Method;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Escribe los archivos de un post en paralelo, fuera de los hilos de gRPC. En JDK 21+ usa
+// hilos virtuales; el semáforo limita cuántas escrituras a disco corren al mismo tiempo.
+class MediaWriter {
+
+    private final BlobStore blobStore;
+    private final ExecutorService executor;
+    private final Semaphore permits;
+
+    MediaWriter(BlobStore blobStore) {
+        this(blobStore, Settings.getInt("questhub.media.write-parallelism", 8));
+    }
+
+    MediaWriter(BlobStore blobStore, int parallelism) {
+        this.blobStore = blobStore;
+        this.executor = newExecutor(parallelism);
+        this.permits = new Semaphore(parallelism);
+    }
+
+    CompletableFuture<StoredBlob> write(String postId, ByteString data) {
+        return CompletableFuture.supplyAsync(() -> {
+            permits.acquireUninterruptibly();
+            try {
+                long start = System.nanoTime();
+                StoredBlob blob = blobStore.store(data);
+                Metrics.recordOperation("disk.write", postId, System.nanoTime() - start);
+                return blob;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            } finally {
+                permits.release();
+            }
+        }, executor);
+    }
+
+    ExecutorService executor() {
+        return executor;
+    }
+
+    private static ExecutorService newExecutor(int parallelism) {
+        try {
+            Method virtual = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtual.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            AtomicInteger counter = new AtomicInteger();
+            return Executors.newFixedThreadPool(parallelism, r -> {
+                Thread thread = new Thread(r, "media-writer-" + counter.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+}
@@ -0,0 +1,40 @@
+package post.server;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.proto.post.Post;
+import config.Settings;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Function;
+
+// Caché en memoria de posts leídos. Caffeine usa W-TinyLFU, así que los posts más
+// consultados se quedan en memoria; el tamaño se limita por bytes serializados.
+// Guarda futures: las lecturas simultáneas de un post que no está en caché esperan a la misma consulta.
+class PostCache {
+
+    private final AsyncCache<String, Post> cache;
+
+    PostCache() {
+        this(Settings.getLong("questhub.post-cache.max-bytes", 64L * 1024 * 1024),
+                Duration.ofSeconds(Settings.getLong("questhub.post-cache.ttl-seconds", 60)));
+    }
+
+    PostCache(long maxBytes, Duration ttl) {
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((String id, Post post) -> post.getSerializedSize())
+                .expireAfterWrite(ttl)
+                .buildAsync();
+    }
+
+    // El loader puede completar con null (post inexistente) y en ese caso no se guarda nada
+    CompletableFuture<Post> get(String id, Function<String, CompletableFuture<Post>> loader) {
+        return cache.get(id, (key, executor) -> loader.apply(key));
+    }
+
+    void invalidate(String id) {
+        cache.synchronous().invalidate(id);
+    }
+}
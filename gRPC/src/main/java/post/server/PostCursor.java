@@ -0,0 +1,62 @@
+package post.server;
+
+import com.mongodb.client.model.Filters;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.Base64;
+
+// Cursor de paginación por llave: la posición (created_at, _id) del último post entregado.
+// La siguiente página empieza en el índice justo después de esa posición, sin skip, así que
+// una página profunda cuesta lo mismo que la primera.
+final class PostCursor {
+
+    // created_at se compara como texto, así que debe tener ancho fijo: Instant.toString() quita los
+    // ceros finales de la fracción y "...:05Z" quedaría después de "...:05.120Z" dentro del mismo segundo
+    private static final DateTimeFormatter CREATED_AT_FORMAT =
+            DateTimeFormatter.ofPattern("uuuu-MM-dd'T'HH:mm:ss.SSS'Z'").withZone(ZoneOffset.UTC);
+
+    final String createdAt;
+    final ObjectId id;
+
+    PostCursor(String createdAt, ObjectId id) {
+        this.createdAt = createdAt;
+        this.id = id;
+    }
+
+    static String createdAt(Instant instant) {
+        return CREATED_AT_FORMAT.format(instant);
+    }
+
+    static PostCursor of(Document document) {
+        Object createdAt = document.get("created_at");
+        return new PostCursor(createdAt != null ? createdAt.toString() : "", document.getObjectId("_id"));
+    }
+
+    static PostCursor decode(String token) {
+        try {
+            String value = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            int separator = value.lastIndexOf('|');
+            return new PostCursor(value.substring(0, separator), new ObjectId(value.substring(separator + 1)));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page token: " + token);
+        }
+    }
+
+    String encode() {
+        String value = createdAt + "|" + id.toHexString();
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+
+    // Posts estrictamente posteriores a este cursor en el orden (created_at desc, _id desc)
+    Bson after() {
+        return Filters.or(
+                Filters.lt("created_at", createdAt),
+                Filters.and(Filters.eq("created_at", createdAt), Filters.lt("_id", id)));
+    }
+}
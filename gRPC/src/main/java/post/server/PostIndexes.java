@@ -0,0 +1,45 @@
+package post.server;
+
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.IndexOptions;
+import com.mongodb.client.model.Indexes;
+import dataaccess.PostRepository;
+import preview.PreviewGenerator;
+
+import java.util.List;
+
+// Índices que necesita ListPosts: cada filtro seguido del orden de la paginación (created_at, _id),
+// así la consulta y el cursor se resuelven dentro del índice sin ordenar en memoria. Los de sha256
+// son para que BlobReclaimer compruebe si un archivo sigue referenciado, y el de previews_pending
+// para el rescan de PreviewGenerator.
+public final class PostIndexes {
+
+    private PostIndexes() {
+    }
+
+    public static void ensure(PostRepository posts) {
+        List<IndexModel> indexes = List.of(
+                new IndexModel(Indexes.compoundIndex(Indexes.descending("created_at"), Indexes.descending("_id")),
+                        new IndexOptions().name("created_at_id").background(true)),
+                new IndexModel(Indexes.compoundIndex(Indexes.ascending("category_id"), Indexes.descending("created_at"), Indexes.descending("_id")),
+                        new IndexOptions().name("category_created_at_id").background(true)),
+                new IndexModel(Indexes.compoundIndex(Indexes.ascending("author_id"), Indexes.descending("created_at"), Indexes.descending("_id")),
+                        new IndexOptions().name("author_created_at_id").background(true)),
+                new IndexModel(Indexes.compoundIndex(Indexes.ascending("is_resolved"), Indexes.descending("created_at"), Indexes.descending("_id")),
+                        new IndexOptions().name("resolved_created_at_id").background(true)),
+                new IndexModel(Indexes.ascending("multimedia.sha256"),
+                        new IndexOptions().name("multimedia_sha256").background(true)),
+                new IndexModel(Indexes.ascending("multimedia.previews.sha256"),
+                        new IndexOptions().name("multimedia_previews_sha256").background(true)),
+                new IndexModel(Indexes.ascending("multimedia." + PreviewGenerator.PENDING_FIELD),
+                        new IndexOptions().name("multimedia_previews_pending").sparse(true).background(true)));
+
+        // createIndexes no hace nada si el índice ya existe con la misma definición
+        try {
+            posts.createIndexes(indexes).join();
+            System.out.println("Índices de posts verificados");
+        } catch (Exception e) {
+            System.err.println("Could not create post indexes: " + e.getMessage());
+        }
+    }
+}
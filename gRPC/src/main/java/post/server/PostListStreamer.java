@@ -0,0 +1,113 @@
+package post.server;
+
+import com.mongodb.client.model.Filters;
+import com.proto.post.ListPostsResponse;
+import dataaccess.PostRepository;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
+import metrics.Metrics;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+
+// Envía una página de ListPosts respetando el control de flujo de gRPC. El repositorio empuja los
+// documentos y su cursor no se puede pausar: cuando el stream deja de estar listo se abandona la
+// consulta y, al volver a estarlo, se lanza otra que empieza justo después del último post enviado
+// (el mismo cursor por llave de page_token). Con un cliente que lee al ritmo normal hay una sola consulta.
+// El callback de Mongo y el de onReady pueden correr a la vez, por eso todo está sincronizado.
+class PostListStreamer {
+
+    private final PostRepository posts;
+    private final Bson filter;
+    private final Bson projection;
+    private final Bson sort;
+    private final int pageSize;
+    private final int batchSize;
+    private final ServerCallStreamObserver<ListPostsResponse> responseObserver;
+    private final long start = System.nanoTime();
+
+    private PostCursor last;
+    private int sent;
+    private int queries;
+    private boolean querying;
+    private boolean paused;
+    private boolean finished;
+
+    PostListStreamer(PostRepository posts, Bson filter, Bson projection, Bson sort, int pageSize, int batchSize,
+                     ServerCallStreamObserver<ListPostsResponse> responseObserver) {
+        this.posts = posts;
+        this.filter = filter;
+        this.projection = projection;
+        this.sort = sort;
+        this.pageSize = pageSize;
+        this.batchSize = batchSize;
+        this.responseObserver = responseObserver;
+    }
+
+    // Debe llamarse antes de que regrese el handler de la llamada
+    synchronized void start() {
+        responseObserver.setOnCancelHandler(this::cancel);
+        responseObserver.setOnReadyHandler(this::resume);
+        query();
+    }
+
+    private synchronized void cancel() {
+        finished = true;
+    }
+
+    private synchronized void resume() {
+        if (paused && !querying && !finished) query();
+    }
+
+    private synchronized void query() {
+        querying = true;
+        paused = false;
+        queries++;
+
+        Bson remainingFilter = last == null ? filter : Filters.and(filter, last.after());
+        int remaining = pageSize - sent;
+        posts.find(remainingFilter, projection, sort, remaining, Math.min(remaining, batchSize), this::send)
+                .whenComplete((ignored, error) -> queryFinished(error));
+    }
+
+    // Regresa false para dejar de leer el cursor
+    private synchronized boolean send(Document document) {
+        if (finished) return false;
+        if (!responseObserver.isReady()) {
+            paused = true;
+            return false;
+        }
+
+        PostCursor cursor = PostCursor.of(document);
+        responseObserver.onNext(ListPostsResponse.newBuilder()
+                .setPost(PostServerImplementation.toPost(document))
+                .setCursor(cursor.encode())
+                .build());
+        last = cursor;
+        sent++;
+        return true;
+    }
+
+    private synchronized void queryFinished(Throwable error) {
+        querying = false;
+        if (finished) return;
+
+        if (error != null) {
+            finished = true;
+            System.err.println("Error listing posts: " + error.getMessage());
+            responseObserver.onError(Status.INTERNAL.withDescription("Error listing posts").withCause(error).asRuntimeException());
+            return;
+        }
+
+        if (paused) {
+            // Si volvió a estar listo mientras terminaba la consulta, onReady ya no lo avisará
+            if (responseObserver.isReady()) query();
+            return;
+        }
+
+        finished = true;
+        Metrics.recordLatency("mongo.list", System.nanoTime() - start);
+        Metrics.record("posts.list.page_size", sent);
+        Metrics.record("posts.list.queries", queries);
+        responseObserver.onCompleted();
+    }
+}
@@ -1,6 +1,9 @@
 package post.server;
 
+import dataaccess.MongoConnection;
 import io.grpc.Server;
+import metrics.MetricsReporter;
+import metrics.MetricsServerInterceptor;
 import io.grpc.ServerBuilder;
 
 import java.io.IOException;
@@ -12,14 +15,20 @@ public class PostServer {
         Server server = ServerBuilder
                 .forPort(port)
                 .addService(new PostServerImplementation())
+                .intercept(new MetricsServerInterceptor())
                 .build();
         server.start();
+        MetricsReporter metricsReporter = new MetricsReporter();
+        metricsReporter.start();
         System.out.println("Servidor iniciado..");
         System.out.println("Escuchando en puerto " + port);
 
         Runtime.getRuntime().addShutdownHook(new Thread(() -> {
             System.out.println("Recibiendo solicitud de apagado");
             server.shutdown();
+            metricsReporter.stop();
+            System.out.println("Pool de MongoDB: " + MongoConnection.getPoolStats());
+            MongoConnection.close();
             System.out.println("Servidor detenido");
         }));
 
@@ -1,95 +1,341 @@
 package post.server;
 
-import com.mongodb.client.MongoCollection;
-import com.mongodb.client.MongoDatabase;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import com.mongodb.client.model.Updates;
 import com.proto.post.*;
+import io.grpc.Status;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
+import config.Settings;
 import dataaccess.*;
-import java.io.File;
-import java.io.FileOutputStream;
-import java.io.IOException;
+import metrics.Metrics;
+import preview.PreviewGenerator;
+import storage.BlobReclaimer;
+import storage.BlobStore;
+import storage.StoredBlob;
 import java.time.Instant;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
 
 public class PostServerImplementation extends PostServiceGrpc.PostServiceImplBase {
 
-    @Override
-    public void createPost(CreatePostRequest request, StreamObserver<CreatePostResponse> responseObserver) {
-        MongoConnection.connect();
-        MongoDatabase database = MongoConnection.getDatabase();
-        MongoCollection<Document> posts = database.getCollection("posts");
+    private static final Bson POST_PROJECTION = Projections.include(
+            "title", "content", "author_id", "category_id", "is_resolved", "created_at",
+            "multimedia.filename", "multimedia.content_type", "multimedia.size",
+            "multimedia.file_url", "multimedia.sha256");
 
-        List<Document> multimediaList = new ArrayList<>();
+    // Lo que hace falta de un post borrado para liberar sus archivos
+    private static final Bson BLOBS_PROJECTION = Projections.include("multimedia.sha256", "multimedia.previews.sha256");
 
-        for (MediaFile mediaFile : request.getMultimediaList()) {
-            String filename = mediaFile.getFilename();
-            byte[] fileData = mediaFile.getData().toByteArray();
-            String contentType = mediaFile.getContentType();
+    private static final List<String> LIST_FIELDS = List.of("title", "author_id", "category_id", "is_resolved", "created_at");
+    private static final List<String> MEDIA_REF_FIELDS = List.of(
+            "multimedia.filename", "multimedia.content_type", "multimedia.size", "multimedia.file_url", "multimedia.sha256");
+    private static final Bson LIST_SORT = Sorts.descending("created_at", "_id");
 
-            String uploadDirectory = "C:\\questhub-uploads\\posts\\";
-            String fullPath = uploadDirectory + filename;
+    private final int listBatchSize = Settings.getInt("questhub.posts.list.batch-size", 50);
+    private final int maxPageSize = Settings.getInt("questhub.posts.list.max-page-size", 100);
+    private final int contentPreviewLength = Settings.getInt("questhub.posts.list.content-preview-chars", 280);
 
+    private final PostRepository posts;
+    private final PostCache postCache = new PostCache();
+    private final MediaWriter mediaWriter;
+    private final PreviewGenerator previewGenerator;
+    private final BlobReclaimer blobReclaimer;
 
-            File dir = new File(uploadDirectory);
-            if (!dir.exists()) {
-                dir.mkdirs();
-            }
+    public PostServerImplementation() {
+        this(MongoConnection.getPostRepository(), BlobStore.getDefault());
+        PostIndexes.ensure(posts);
+    }
 
-            try (FileOutputStream fos = new FileOutputStream(fullPath)) {
-                fos.write(fileData);
-            } catch (IOException e) {
-                responseObserver.onError(e);
-                return;
-            }
+    public PostServerImplementation(PostRepository posts, BlobStore blobStore) {
+        this(posts, blobStore, new PreviewGenerator(posts, blobStore), new BlobReclaimer(posts, blobStore));
+    }
+
+    public PostServerImplementation(PostRepository posts, BlobStore blobStore, PreviewGenerator previewGenerator,
+                                    BlobReclaimer blobReclaimer) {
+        this.posts = posts;
+        this.mediaWriter = new MediaWriter(blobStore);
+        this.previewGenerator = previewGenerator;
+        this.blobReclaimer = blobReclaimer;
+    }
 
-            Document mediaDocument = new Document("filename", filename)
-                    .append("content_type", contentType)
-                    .append("file_url", fullPath);
+    @Override
+    public void createPost(CreatePostRequest request, StreamObserver<CreatePostResponse> responseObserver) {
+        // El id se asigna aquí para poder asociar las métricas de disco al post
+        String postId = new ObjectId().toString();
 
-            multimediaList.add(mediaDocument);
+        // Las escrituras a disco arrancan de inmediato y en paralelo
+        List<CompletableFuture<StoredBlob>> writes = new ArrayList<>();
+        for (MediaFile mediaFile : request.getMultimediaList()) {
+            writes.add(mediaWriter.write(postId, mediaFile.getData()));
         }
 
-        Document document = new Document("title", request.getTitle())
+        // Mientras tanto se prepara el documento del post
+        Document document = new Document("_id", new ObjectId(postId))
+                .append("title", request.getTitle())
                 .append("content", request.getContent())
                 .append("author_id", request.getAuthorId())
                 .append("category_id", request.getCategoryId())
                 .append("is_resolved", false)
-                .append("created_at", Instant.now().toString())
-                .append("multimedia", multimediaList);
+                .append("created_at", PostCursor.createdAt(Instant.now()));
+
+        CompletableFuture.allOf(writes.toArray(new CompletableFuture[0])).whenCompleteAsync((ignored, writeError) -> {
+            if (writeError != null) {
+                releaseCreated(writes);
+                System.err.println("Error writing multimedia: " + writeError.getMessage());
+                responseObserver.onError(Status.INTERNAL.withDescription("Error writing multimedia")
+                        .withCause(writeError).asRuntimeException());
+                return;
+            }
 
-        posts.insertOne(document);
+            List<Document> multimediaList = new ArrayList<>();
+            for (int i = 0; i < writes.size(); i++) {
+                MediaFile mediaFile = request.getMultimedia(i);
+                StoredBlob blob = writes.get(i).join();
 
-        Post post = Post.newBuilder()
-                .setId(document.getObjectId("_id").toString())
-                .setTitle(request.getTitle())
-                .setContent(request.getContent())
-                .setAuthorId(request.getAuthorId())
-                .setCategoryId(request.getCategoryId())
-                .setIsResolved(false)
-                .setCreatedAt(document.getString("created_at"))
-                .addAllMultimedia(request.getMultimediaList())
-                .build();
+                // El contenido se guarda una sola vez bajo su hash; si ya existía solo se referencia
+                multimediaList.add(PreviewGenerator.markPending(new Document("filename", mediaFile.getFilename())
+                        .append("content_type", mediaFile.getContentType())
+                        .append("file_url", blob.getKey())
+                        .append("sha256", blob.getSha256())
+                        .append("size", blob.getSize()), mediaFile.getContentType()));
+            }
+            document.append("multimedia", multimediaList);
+
+            long start = System.nanoTime();
+            posts.insert(document).whenComplete((inserted, insertError) -> {
+                if (insertError != null) {
+                    releaseCreated(writes);
+                    System.err.println("Error creating post: " + insertError.getMessage());
+                    responseObserver.onError(Status.INTERNAL.withDescription("Error creating post")
+                            .withCause(insertError).asRuntimeException());
+                    return;
+                }
+                Metrics.recordOperation("mongo.insert", postId, System.nanoTime() - start);
 
-        CreatePostResponse response = CreatePostResponse.newBuilder().setPost(post).build();
-        responseObserver.onNext(response);
-        responseObserver.onCompleted();
+                for (int i = 0; i < writes.size(); i++) {
+                    StoredBlob blob = writes.get(i).join();
+                    previewGenerator.submit(postId, blob.getSha256(), request.getMultimedia(i).getContentType(), blob.getKey());
+                }
+
+                Post.Builder post = toPost(document).toBuilder();
+                if (request.getEchoMultimedia()) {
+                    post.addAllMultimedia(request.getMultimediaList());
+                }
+
+                responseObserver.onNext(CreatePostResponse.newBuilder().setPost(post).build());
+                responseObserver.onCompleted();
+            });
+        }, mediaWriter.executor());
+    }
+
+    // Rollback de los archivos que esta petición alcanzó a escribir
+    private void releaseCreated(List<CompletableFuture<StoredBlob>> writes) {
+        for (CompletableFuture<StoredBlob> write : writes) {
+            if (write.isDone() && !write.isCompletedExceptionally()) {
+                blobReclaimer.releaseCreated(write.join());
+            }
+        }
     }
 
     @Override
     public void getPost(GetPostRequest request, StreamObserver<GetPostResponse> responseObserver) {
+        String id = request.getId();
+        if (!ObjectId.isValid(id)) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid post ID: " + id).asRuntimeException());
+            return;
+        }
+
+        postCache.get(id, this::loadPost).whenComplete((post, error) -> {
+            if (error != null) {
+                System.err.println("Error retrieving post: " + error.getMessage());
+                responseObserver.onError(Status.INTERNAL.withDescription("Error retrieving post").withCause(error).asRuntimeException());
+                return;
+            }
+            if (post == null) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Post not found with ID: " + id).asRuntimeException());
+                return;
+            }
 
+            responseObserver.onNext(GetPostResponse.newBuilder().setPost(post).build());
+            responseObserver.onCompleted();
+        });
     }
 
     @Override
     public void updatePost(UpdatePostRequest request, StreamObserver<UpdatePostResponse> responseObserver) {
+        Post changes = request.getPost();
+        String id = changes.getId();
+        if (!ObjectId.isValid(id)) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid post ID: " + id).asRuntimeException());
+            return;
+        }
+
+        // Solo se actualizan los campos que vienen con valor
+        List<Bson> updates = new ArrayList<>();
+        if (!changes.getTitle().isEmpty()) updates.add(Updates.set("title", changes.getTitle()));
+        if (!changes.getContent().isEmpty()) updates.add(Updates.set("content", changes.getContent()));
+        if (!changes.getCategoryId().isEmpty()) updates.add(Updates.set("category_id", changes.getCategoryId()));
+        if (changes.hasIsResolved()) updates.add(Updates.set("is_resolved", changes.getIsResolved()));
+
+        if (updates.isEmpty()) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("No fields to update").asRuntimeException());
+            return;
+        }
+
+        long start = System.nanoTime();
+        posts.findOneAndUpdate(new ObjectId(id), Updates.combine(updates), POST_PROJECTION).whenComplete((updated, error) -> {
+            if (error != null) {
+                System.err.println("Error updating post: " + error.getMessage());
+                responseObserver.onError(Status.INTERNAL.withDescription("Error updating post").withCause(error).asRuntimeException());
+                return;
+            }
+            Metrics.recordOperation("mongo.update", id, System.nanoTime() - start);
+            postCache.invalidate(id);
+
+            if (updated == null) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Post not found with ID: " + id).asRuntimeException());
+                return;
+            }
 
+            responseObserver.onNext(UpdatePostResponse.newBuilder().setPost(toPost(updated)).build());
+            responseObserver.onCompleted();
+        });
     }
 
     @Override
     public void deletePost(DeletePostRequest request, StreamObserver<DeletePostResponse> responseObserver) {
+        String id = request.getId();
+        if (!ObjectId.isValid(id)) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription("Invalid post ID: " + id).asRuntimeException());
+            return;
+        }
+
+        long start = System.nanoTime();
+        posts.findOneAndDelete(new ObjectId(id), BLOBS_PROJECTION).whenComplete((deleted, error) -> {
+            if (error != null) {
+                System.err.println("Error deleting post: " + error.getMessage());
+                responseObserver.onError(Status.INTERNAL.withDescription("Error deleting post").withCause(error).asRuntimeException());
+                return;
+            }
+            Metrics.recordOperation("mongo.delete", id, System.nanoTime() - start);
+            postCache.invalidate(id);
+
+            if (deleted == null) {
+                responseObserver.onError(Status.NOT_FOUND.withDescription("Post not found with ID: " + id).asRuntimeException());
+                return;
+            }
+
+            // Otros posts pueden compartir los archivos; el reclaimer solo borra los que quedaron sin referencia
+            List<Document> multimediaList = deleted.getList("multimedia", Document.class);
+            if (multimediaList != null) {
+                for (Document mediaDocument : multimediaList) {
+                    blobReclaimer.release(mediaDocument.getString("sha256"));
+                    List<Document> previews = mediaDocument.getList("previews", Document.class);
+                    if (previews != null) previews.forEach(preview -> blobReclaimer.release(preview.getString("sha256")));
+                }
+            }
+
+            responseObserver.onNext(DeletePostResponse.newBuilder().setId(id).build());
+            responseObserver.onCompleted();
+        });
+    }
+
+    @Override
+    public void listPosts(ListPostsRequest request, StreamObserver<ListPostsResponse> responseObserver) {
+        ServerCallStreamObserver<ListPostsResponse> serverObserver = (ServerCallStreamObserver<ListPostsResponse>) responseObserver;
+
+        int pageSize = request.getPageSize() > 0 ? Math.min(request.getPageSize(), maxPageSize) : 20;
+
+        try {
+            List<Bson> filters = new ArrayList<>();
+            if (request.hasCategoryId()) filters.add(Filters.eq("category_id", request.getCategoryId()));
+            if (request.hasAuthorId()) filters.add(Filters.eq("author_id", request.getAuthorId()));
+            if (request.hasIsResolved()) filters.add(Filters.eq("is_resolved", request.getIsResolved()));
+            if (!request.getPageToken().isEmpty()) filters.add(PostCursor.decode(request.getPageToken()).after());
+
+            Bson filter = filters.isEmpty() ? new Document() : Filters.and(filters);
+
+            // Cada post se envía en cuanto sale del cursor, pero solo mientras el stream esté listo
+            new PostListStreamer(posts, filter, listProjection(request), LIST_SORT, pageSize,
+                    Math.min(pageSize, listBatchSize), serverObserver).start();
+
+        } catch (IllegalArgumentException e) {
+            responseObserver.onError(Status.INVALID_ARGUMENT.withDescription(e.getMessage()).asRuntimeException());
+        }
+    }
+
+    // Por defecto no viajan los archivos y del contenido solo los primeros caracteres
+    private Bson listProjection(ListPostsRequest request) {
+        List<Bson> projections = new ArrayList<>();
+        projections.add(Projections.include(LIST_FIELDS));
+        if (request.getIncludeContent()) {
+            projections.add(Projections.include("content"));
+        } else {
+            projections.add(Projections.computed("content",
+                    new Document("$substrCP", List.of(new Document("$ifNull", List.of("$content", "")), 0, contentPreviewLength))));
+        }
+        if (request.getIncludeMediaRefs()) {
+            projections.add(Projections.include(MEDIA_REF_FIELDS));
+        }
+        return Projections.fields(projections);
+    }
+
+    private CompletableFuture<Post> loadPost(String id) {
+        long start = System.nanoTime();
+        return posts.findById(new ObjectId(id), POST_PROJECTION).thenApply(document -> {
+            Metrics.recordOperation("mongo.find", id, System.nanoTime() - start);
+            return document != null ? toPost(document) : null;
+        });
+    }
+
+    // Las subidas pasan por el servicio multimedia y cambian la lista de archivos del post. Si corre en
+    // el mismo proceso (QuesthubServer) avisa por aquí; si corre aparte, la entrada vive hasta el TTL.
+    public void invalidateCachedPost(String id) {
+        postCache.invalidate(id);
+    }
+
+    // Los archivos nunca se incluyen: solo referencias a ellos
+    static Post toPost(Document document) {
+        Post.Builder post = Post.newBuilder()
+                .setId(document.getObjectId("_id").toString())
+                .setTitle(stringValue(document, "title"))
+                .setContent(stringValue(document, "content"))
+                .setAuthorId(stringValue(document, "author_id"))
+                .setCategoryId(stringValue(document, "category_id"))
+                .setIsResolved(Boolean.TRUE.equals(document.getBoolean("is_resolved")))
+                .setCreatedAt(stringValue(document, "created_at"));
+
+        List<Document> multimediaList = document.getList("multimedia", Document.class);
+        if (multimediaList != null) {
+            for (Document mediaDocument : multimediaList) {
+                post.addMediaRefs(toMediaRef(mediaDocument));
+            }
+        }
+
+        return post.build();
+    }
+
+    static MediaRef toMediaRef(Document mediaDocument) {
+        Object size = mediaDocument.get("size");
+        return MediaRef.newBuilder()
+                .setFilename(stringValue(mediaDocument, "filename"))
+                .setContentType(stringValue(mediaDocument, "content_type"))
+                .setSize(size instanceof Number ? ((Number) size).longValue() : 0)
+                .setUrl(stringValue(mediaDocument, "file_url"))
+                .setSha256(stringValue(mediaDocument, "sha256"))
+                .build();
+    }
 
+    private static String stringValue(Document document, String key) {
+        Object value = document.get(key);
+        return value != null ? value.toString() : "";
     }
 
 }
@@ -0,0 +1,268 @@
+package preview;
+
+import com.google.protobuf.UnsafeByteOperations;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.Updates;
+import config.Settings;
+import dataaccess.PostRepository;
+import metrics.Metrics;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import storage.BlobStore;
+import storage.StoredBlob;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Genera versiones reducidas de las imágenes subidas, en segundo plano y fuera del camino de la
+// respuesta. Cada imagen se registra en Mongo con previews_pending y la marca se quita al terminar.
+// La cola es acotada: si se llena, la imagen no se encola y un rescan periódico la vuelve a tomar de
+// Mongo cuando hay lugar (también las que quedaron pendientes por un reinicio).
+// Debe haber una sola instancia por proceso para que el límite de la cola sea real.
+public class PreviewGenerator {
+
+    public static final String PENDING_FIELD = "previews_pending";
+
+    private static final List<String> SUPPORTED_TYPES = List.of("image/jpeg", "image/jpg", "image/png", "image/gif", "image/bmp");
+    private static final Bson PENDING_PROJECTION = Projections.include(
+            "multimedia.sha256", "multimedia.content_type", "multimedia.file_url", "multimedia." + PENDING_FIELD);
+
+    private final PostRepository posts;
+    private final BlobStore blobStore;
+    private final int[] sizes;
+    private final long maxSourceBytes;
+    private final long maxSourcePixels;
+    private final ThreadPoolExecutor executor;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    public PreviewGenerator(PostRepository posts, BlobStore blobStore) {
+        this.posts = posts;
+        this.blobStore = blobStore;
+        this.sizes = Arrays.stream(Settings.get("questhub.preview.sizes", "160,480").split(","))
+                .mapToInt(size -> Integer.parseInt(size.trim()))
+                .sorted()
+                .toArray();
+        this.maxSourceBytes = Settings.getLong("questhub.preview.max-source-bytes", 30L * 1024 * 1024);
+        // Un PNG o JPEG pequeño puede declarar dimensiones enormes; se rechaza antes de decodificarlo
+        this.maxSourcePixels = Settings.getLong("questhub.preview.max-source-pixels", 100_000_000L);
+
+        int workers = Settings.getInt("questhub.preview.workers", 2);
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Settings.getInt("questhub.preview.queue-size", 256)),
+                r -> {
+                    Thread thread = new Thread(r, "preview-worker-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    thread.setPriority(Thread.MIN_PRIORITY);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        long rescanSeconds = Settings.getLong("questhub.preview.rescan-interval-seconds", 60);
+        if (rescanSeconds > 0 && sizes.length > 0) {
+            ScheduledExecutorService rescanner = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "preview-rescan");
+                thread.setDaemon(true);
+                return thread;
+            });
+            rescanner.scheduleWithFixedDelay(this::rescan, rescanSeconds, rescanSeconds, TimeUnit.SECONDS);
+        }
+    }
+
+    public static boolean isSupported(String contentType) {
+        return contentType != null && SUPPORTED_TYPES.contains(contentType.toLowerCase());
+    }
+
+    // Marca el documento multimedia para que la imagen no se pierda si su tarea no llega a ejecutarse
+    public static Document markPending(Document multimediaDocument, String contentType) {
+        if (isSupported(contentType)) multimediaDocument.append(PENDING_FIELD, true);
+        return multimediaDocument;
+    }
+
+    // Encola la generación de previews de una imagen ya registrada en el post (se ubica por su sha256)
+    public void submit(String postId, String sha256, String contentType, String sourceKey) {
+        if (!isSupported(contentType) || sizes.length == 0) return;
+
+        // El rescan puede encontrar una imagen que ya está en la cola
+        String task = postId + "/" + sha256;
+        if (!queued.add(task)) return;
+
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(postId, sha256, sourceKey);
+                } finally {
+                    queued.remove(task);
+                }
+            });
+            Metrics.gauge("preview.queue_depth").set(executor.getQueue().size());
+        } catch (RejectedExecutionException e) {
+            // Sigue marcada en Mongo; el rescan la encola cuando haya lugar
+            queued.remove(task);
+            Metrics.increment("preview.deferred");
+        }
+    }
+
+    // Toma de Mongo solo las imágenes pendientes que caben en la cola
+    void rescan() {
+        int capacity = executor.getQueue().remainingCapacity();
+        if (capacity == 0) return;
+
+        try {
+            posts.find(Filters.eq("multimedia." + PENDING_FIELD, true), PENDING_PROJECTION, null, capacity, capacity, document -> {
+                String postId = document.getObjectId("_id").toString();
+                for (Document media : document.getList("multimedia", Document.class)) {
+                    if (!Boolean.TRUE.equals(media.getBoolean(PENDING_FIELD))) continue;
+                    if (executor.getQueue().remainingCapacity() == 0) return false;
+                    submit(postId, media.getString("sha256"), media.getString("content_type"), media.getString("file_url"));
+                }
+                return true;
+            }).join();
+        } catch (Exception e) {
+            System.err.println("Could not rescan pending previews: " + e.getMessage());
+        }
+    }
+
+    private void generate(String postId, String sha256, String sourceKey) {
+        long start = System.nanoTime();
+        List<Document> previews = List.of();
+        try {
+            previews = render(sourceKey);
+        } catch (Exception e) {
+            Metrics.increment("preview.failed");
+            System.err.println("Could not generate previews for " + sourceKey + ": " + e.getMessage());
+        }
+
+        // La marca se quita aunque no haya previews (imagen pequeña, enorme o dañada) para no reintentarla;
+        // la lista se reemplaza completa para que regenerar sea idempotente
+        Bson clearPending = Updates.unset("multimedia.$[m]." + PENDING_FIELD);
+        Bson update = previews.isEmpty() ? clearPending : Updates.combine(Updates.set("multimedia.$[m].previews", previews), clearPending);
+        try {
+            posts.updateOne(
+                    Filters.eq("_id", new ObjectId(postId)),
+                    update,
+                    new UpdateOptions().arrayFilters(List.of(Filters.eq("m.sha256", sha256)))).join();
+
+            if (!previews.isEmpty()) Metrics.recordOperation("preview.generate", postId, System.nanoTime() - start);
+        } catch (Exception e) {
+            // Queda pendiente y el rescan lo reintenta
+            System.err.println("Could not save previews for " + sourceKey + ": " + e.getMessage());
+        } finally {
+            Metrics.gauge("preview.queue_depth").set(executor.getQueue().size());
+        }
+    }
+
+    private List<Document> render(String sourceKey) throws IOException {
+        Decoded original;
+        try (SeekableByteChannel source = blobStore.open(sourceKey)) {
+            if (source.size() > maxSourceBytes) return List.of();
+            original = decode(source, sourceKey);
+        }
+        if (original == null) return List.of();
+
+        List<Document> previews = new ArrayList<>();
+        for (int size : sizes) {
+            if (Math.max(original.width, original.height) <= size) break;
+            previews.add(storePreview(original.image, size));
+        }
+        return previews;
+    }
+
+    // Lee primero solo las dimensiones y después decodifica submuestreando, de modo que el raster en
+    // memoria quede cerca de la preview más grande y no del tamaño completo de la imagen
+    private Decoded decode(SeekableByteChannel source, String sourceKey) throws IOException {
+        try (ImageInputStream input = ImageIO.createImageInputStream(Channels.newInputStream(source))) {
+            if (input == null) return null;
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+            if (!readers.hasNext()) return null;
+
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                if ((long) width * height > maxSourcePixels) {
+                    Metrics.increment("preview.too_large");
+                    System.err.println("Image too large for previews (" + width + "x" + height + "): " + sourceKey);
+                    return null;
+                }
+
+                // El lado mayor decodificado nunca queda por debajo de la preview más grande
+                int subsampling = Math.max(1, Math.max(width, height) / sizes[sizes.length - 1]);
+                ImageReadParam param = reader.getDefaultReadParam();
+                param.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                return new Decoded(reader.read(0, param), width, height);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private Document storePreview(BufferedImage original, int size) throws IOException {
+        double scale = (double) size / Math.max(original.getWidth(), original.getHeight());
+        int width = Math.max(1, (int) Math.round(original.getWidth() * scale));
+        int height = Math.max(1, (int) Math.round(original.getHeight() * scale));
+
+        // PNG solo si la imagen tiene transparencia; lo demás se guarda como JPEG
+        boolean alpha = original.getColorModel().hasAlpha();
+        BufferedImage scaled = new BufferedImage(width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        Graphics2D graphics = scaled.createGraphics();
+        try {
+            graphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+            graphics.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
+            graphics.drawImage(original, 0, 0, width, height, null);
+        } finally {
+            graphics.dispose();
+        }
+
+        String format = alpha ? "png" : "jpeg";
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(scaled, format, out);
+        StoredBlob blob = blobStore.store(UnsafeByteOperations.unsafeWrap(out.toByteArray()));
+
+        return new Document("dimension", size)
+                .append("width", width)
+                .append("height", height)
+                .append("content_type", "image/" + format)
+                .append("file_url", blob.getKey())
+                .append("sha256", blob.getSha256())
+                .append("size", blob.getSize());
+    }
+
+    private static final class Decoded {
+        final BufferedImage image;
+        final int width;
+        final int height;
+
+        Decoded(BufferedImage image, int width, int height) {
+            this.image = image;
+            this.width = width;
+            this.height = height;
+        }
+    }
+}
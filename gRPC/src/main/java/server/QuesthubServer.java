@@ -0,0 +1,133 @@
+package server;
+
+import dataaccess.MongoConnection;
+import dataaccess.PostRepository;
+import io.grpc.Server;
+import io.grpc.ServerInterceptors;
+import io.grpc.netty.shaded.io.grpc.netty.NettyServerBuilder;
+import io.grpc.netty.shaded.io.netty.channel.EventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.ServerChannel;
+import io.grpc.netty.shaded.io.netty.channel.epoll.Epoll;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.epoll.EpollServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.channel.nio.NioEventLoopGroup;
+import io.grpc.netty.shaded.io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.grpc.netty.shaded.io.netty.util.concurrent.DefaultThreadFactory;
+import metrics.MetricsReporter;
+import metrics.MetricsServerInterceptor;
+import multimedia.MultimediaServerImplementation;
+import multimedia.ServerCallMetadataInterceptor;
+import multimedia.UploadAdmission;
+import multimedia.UploadAdmissionInterceptor;
+import post.server.PostIndexes;
+import post.server.PostServerImplementation;
+import preview.PreviewGenerator;
+import storage.BlobReclaimer;
+import storage.BlobStore;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Un solo proceso con PostService y MultimediaService. Los hilos de I/O de Netty (boss/worker)
+// están separados del executor donde corren los handlers de la aplicación.
+public class QuesthubServer {
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        ServerConfig config = new ServerConfig();
+
+        boolean epoll = config.nativeTransport && Epoll.isAvailable();
+        EventLoopGroup bossGroup;
+        EventLoopGroup workerGroup;
+        Class<? extends ServerChannel> channelType;
+
+        if (epoll) {
+            bossGroup = new EpollEventLoopGroup(config.bossThreads, new DefaultThreadFactory("grpc-boss", true));
+            workerGroup = new EpollEventLoopGroup(config.workerThreads, new DefaultThreadFactory("grpc-worker", true));
+            channelType = EpollServerSocketChannel.class;
+        } else {
+            bossGroup = new NioEventLoopGroup(config.bossThreads, new DefaultThreadFactory("grpc-boss", true));
+            workerGroup = new NioEventLoopGroup(config.workerThreads, new DefaultThreadFactory("grpc-worker", true));
+            channelType = NioServerSocketChannel.class;
+        }
+
+        ExecutorService appExecutor = Executors.newFixedThreadPool(config.appThreads, namedThreads("grpc-app"));
+
+        // Los dos servicios comparten el repositorio, el store, un solo generador de previews (una sola
+        // cola acotada) y un solo reclaimer. En el mismo proceso, cada subida invalida de inmediato el
+        // post en la caché de PostService.
+        PostRepository posts = MongoConnection.getPostRepository();
+        BlobStore blobStore = BlobStore.getDefault();
+        PreviewGenerator previewGenerator = new PreviewGenerator(posts, blobStore);
+        BlobReclaimer blobReclaimer = new BlobReclaimer(posts, blobStore);
+        PostIndexes.ensure(posts);
+
+        PostServerImplementation postService = new PostServerImplementation(posts, blobStore, previewGenerator, blobReclaimer);
+        MultimediaServerImplementation multimediaService = new MultimediaServerImplementation(
+                posts, blobStore, previewGenerator, blobReclaimer, postService::invalidateCachedPost);
+
+        NettyServerBuilder builder = NettyServerBuilder
+                .forAddress(new InetSocketAddress(config.port))
+                .bossEventLoopGroup(bossGroup)
+                .workerEventLoopGroup(workerGroup)
+                .channelType(channelType)
+                .executor(appExecutor)
+                .flowControlWindow(config.flowControlWindow)
+                .maxConcurrentCallsPerConnection(config.maxConcurrentCallsPerConnection)
+                .maxInboundMessageSize(config.maxInboundMessageSize)
+                .keepAliveTime(config.keepAliveTimeSeconds, TimeUnit.SECONDS)
+                .keepAliveTimeout(config.keepAliveTimeoutSeconds, TimeUnit.SECONDS)
+                .permitKeepAliveTime(config.permitKeepAliveTimeSeconds, TimeUnit.SECONDS)
+                .addService(postService)
+                .addService(ServerInterceptors.intercept(
+                        multimediaService, new UploadAdmissionInterceptor(new UploadAdmission())))
+                .intercept(new ServerCallMetadataInterceptor())
+                .intercept(new MetricsServerInterceptor());
+
+        if (config.maxConnectionIdleSeconds > 0) {
+            builder.maxConnectionIdle(config.maxConnectionIdleSeconds, TimeUnit.SECONDS);
+        }
+
+        Server server = builder.build();
+
+        server.start();
+        MetricsReporter metricsReporter = new MetricsReporter();
+        metricsReporter.start();
+        System.out.println("Servidor iniciado..");
+        System.out.println("Escuchando en puerto " + config.port + " (" + (epoll ? "epoll" : "nio") + ")");
+        System.out.println("Configuración: " + config);
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            System.out.println("Recibiendo solicitud de apagado");
+            server.shutdown();
+            try {
+                server.awaitTermination(30, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            appExecutor.shutdown();
+            blobReclaimer.shutdown();
+            bossGroup.shutdownGracefully();
+            workerGroup.shutdownGracefully();
+            metricsReporter.stop();
+            System.out.println("Pool de MongoDB: " + MongoConnection.getPoolStats());
+            MongoConnection.close();
+            System.out.println("Servidor detenido");
+        }));
+
+        server.awaitTermination();
+    }
+
+    private static ThreadFactory namedThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return r -> {
+            Thread thread = new Thread(r, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+}
@@ -0,0 +1,35 @@
+package server;
+
+import config.Settings;
+
+// Parámetros del servidor gRPC; cada uno se puede sobreescribir con -Dquesthub.server.* o QUESTHUB_SERVER_*.
+class ServerConfig {
+
+    private static final int CORES = Runtime.getRuntime().availableProcessors();
+
+    final int port = Settings.getInt("questhub.server.port", 50051);
+    final boolean nativeTransport = Settings.getBoolean("questhub.server.native-transport", true);
+    final int bossThreads = Settings.getInt("questhub.server.boss-threads", 1);
+    final int workerThreads = Settings.getInt("questhub.server.worker-threads", CORES);
+    final int appThreads = Settings.getInt("questhub.server.app-threads", CORES * 4);
+    final int maxInboundMessageSize = Settings.getInt("questhub.server.max-inbound-message-bytes", 20 * 1024 * 1024);
+    final int flowControlWindow = Settings.getInt("questhub.server.flow-control-window-bytes", 1024 * 1024);
+    final int maxConcurrentCallsPerConnection = Settings.getInt("questhub.server.max-concurrent-streams", 256);
+    final long keepAliveTimeSeconds = Settings.getLong("questhub.server.keepalive-time-seconds", 60);
+    final long keepAliveTimeoutSeconds = Settings.getLong("questhub.server.keepalive-timeout-seconds", 20);
+    final long permitKeepAliveTimeSeconds = Settings.getLong("questhub.server.permit-keepalive-time-seconds", 30);
+    final long maxConnectionIdleSeconds = Settings.getLong("questhub.server.max-connection-idle-seconds", 0);
+
+    @Override
+    public String toString() {
+        return "port=" + port
+                + " nativeTransport=" + nativeTransport
+                + " bossThreads=" + bossThreads
+                + " workerThreads=" + workerThreads
+                + " appThreads=" + appThreads
+                + " maxInboundMessageSize=" + maxInboundMessageSize
+                + " flowControlWindow=" + flowControlWindow
+                + " maxConcurrentStreams=" + maxConcurrentCallsPerConnection
+                + " keepAliveTime=" + keepAliveTimeSeconds + "s";
+    }
+}
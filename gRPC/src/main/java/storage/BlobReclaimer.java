@@ -0,0 +1,131 @@
+package storage;
+
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.Projections;
+import config.Settings;
+import dataaccess.PostRepository;
+import metrics.Metrics;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.Stream;
+
+// Recupera el espacio de los blobs que ningún post referencia. Hay dos caminos:
+//  - release(): los que una subida fallida acababa de crear o los de un post borrado; se revisan
+//    cada pocos segundos, en cuanto termina su periodo de gracia.
+//  - sweep(): recorre todo el store de vez en cuando, para lo que se perdió al reiniciar.
+// En ambos casos el blob se borra solo si no se ha usado durante la gracia y Mongo no lo referencia
+// ni como archivo ni como preview.
+public class BlobReclaimer {
+
+    private final PostRepository posts;
+    private final BlobStore blobStore;
+    private final Duration grace;
+    private final Map<String, Boolean> candidates = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService scheduler;
+
+    public BlobReclaimer(PostRepository posts, BlobStore blobStore) {
+        this(posts, blobStore,
+                Duration.ofSeconds(Settings.getLong("questhub.storage.reclaim.grace-seconds", 600)),
+                Settings.getLong("questhub.storage.reclaim.interval-seconds", 30),
+                Settings.getLong("questhub.storage.sweep.interval-hours", 24));
+    }
+
+    // Un intervalo de 0 desactiva esa tarea
+    public BlobReclaimer(PostRepository posts, BlobStore blobStore, Duration grace,
+                         long reclaimIntervalSeconds, long sweepIntervalHours) {
+        this.posts = posts;
+        this.blobStore = blobStore;
+        this.grace = grace;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "blob-reclaimer");
+            thread.setDaemon(true);
+            thread.setPriority(Thread.MIN_PRIORITY);
+            return thread;
+        });
+
+        if (reclaimIntervalSeconds > 0) {
+            scheduler.scheduleWithFixedDelay(this::reclaimCandidates,
+                    reclaimIntervalSeconds, reclaimIntervalSeconds, TimeUnit.SECONDS);
+        }
+        if (sweepIntervalHours > 0) {
+            scheduler.scheduleWithFixedDelay(this::sweep, sweepIntervalHours, sweepIntervalHours, TimeUnit.HOURS);
+        }
+    }
+
+    // Para los rollbacks: solo importan los blobs que esta subida creó; uno deduplicado ya era de alguien más
+    public void releaseCreated(StoredBlob blob) {
+        if (!blob.isDeduplicated()) release(blob.getSha256());
+    }
+
+    public void release(String sha256) {
+        if (sha256 != null && !sha256.isEmpty()) candidates.put(sha256, Boolean.TRUE);
+    }
+
+    // Los candidatos que siguen dentro de la gracia se quedan para la siguiente vuelta
+    public void reclaimCandidates() {
+        Instant cutoff = Instant.now().minus(grace);
+        for (String sha256 : new ArrayList<>(candidates.keySet())) {
+            try {
+                Instant lastUsed = blobStore.lastUsed(sha256);
+                if (lastUsed != null && !lastUsed.isBefore(cutoff)) continue;
+
+                candidates.remove(sha256);
+                if (lastUsed != null) reclaim(sha256, cutoff);
+            } catch (Exception e) {
+                System.err.println("Could not reclaim blob " + sha256 + ": " + e.getMessage());
+            }
+        }
+        Metrics.gauge("storage.reclaim_candidates").set(candidates.size());
+    }
+
+    public void sweep() {
+        Instant cutoff = Instant.now().minus(grace);
+        long start = System.nanoTime();
+        int checked = 0;
+        try (Stream<String> blobs = blobStore.list()) {
+            for (String sha256 : (Iterable<String>) blobs::iterator) {
+                Instant lastUsed = blobStore.lastUsed(sha256);
+                if (lastUsed == null || !lastUsed.isBefore(cutoff)) continue;
+                checked++;
+                reclaim(sha256, cutoff);
+            }
+        } catch (Exception e) {
+            System.err.println("Blob sweep failed: " + e.getMessage());
+        }
+        Metrics.recordLatency("storage.sweep", System.nanoTime() - start);
+        System.out.println("Barrido de blobs: " + checked + " sin uso reciente revisados");
+    }
+
+    // Primero Mongo y después el borrado condicionado: una subida que lo deduplique entre los dos pasos
+    // renueva su fecha de uso y deleteIfUnusedSince lo conserva
+    boolean reclaim(String sha256, Instant cutoff) throws IOException {
+        if (isReferenced(sha256)) return false;
+
+        boolean deleted = blobStore.deleteIfUnusedSince(sha256, cutoff);
+        if (deleted) Metrics.increment("storage.reclaimed");
+        return deleted;
+    }
+
+    private boolean isReferenced(String sha256) {
+        AtomicBoolean found = new AtomicBoolean();
+        posts.find(Filters.or(Filters.eq("multimedia.sha256", sha256), Filters.eq("multimedia.previews.sha256", sha256)),
+                Projections.include("_id"), null, 1, 1, document -> {
+                    found.set(true);
+                    return false;
+                }).join();
+        return found.get();
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+    }
+}
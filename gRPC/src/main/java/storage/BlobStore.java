@@ -0,0 +1,41 @@
+package storage;
+
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.nio.channels.SeekableByteChannel;
+import java.time.Instant;
+import java.util.stream.Stream;
+
+// Almacenamiento de los archivos multimedia, direccionado por contenido. En Mongo solo se guarda la
+// llave que devuelve el store (StoredBlob.getKey()), nunca una ruta del disco.
+//
+// Un blob publicado puede quedar referenciado por cualquier post en cuanto aparece bajo su hash, incluso
+// por una subida que lo deduplicó y todavía no escribe sus metadatos. Por eso nadie lo borra directamente:
+// cada uso (publicación o deduplicación) renueva su fecha de último uso, y BlobReclaimer solo borra los
+// que no se han usado en un periodo de gracia y que ningún post de Mongo referencia.
+public interface BlobStore {
+
+    static BlobStore getDefault() {
+        return LocalBlobStore.getDefault();
+    }
+
+    // Escritura por partes; el contenido se publica bajo su hash al hacer commit
+    BlobWriter newWriter() throws IOException;
+
+    StoredBlob store(ByteString data) throws IOException;
+
+    // El blob con ese hash, o null si no existe
+    StoredBlob find(String sha256) throws IOException;
+
+    SeekableByteChannel open(String key) throws IOException;
+
+    // Hashes de todos los blobs publicados; el stream se debe cerrar
+    Stream<String> list() throws IOException;
+
+    // Cuándo se publicó o deduplicó el blob por última vez, o null si no existe
+    Instant lastUsed(String sha256) throws IOException;
+
+    // Borra el blob solo si no se ha usado desde cutoff; regresa false si se conservó
+    boolean deleteIfUnusedSince(String sha256, Instant cutoff) throws IOException;
+}
@@ -0,0 +1,22 @@
+package storage;
+
+import com.google.protobuf.ByteString;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Escribe un archivo chunk por chunk calculando su SHA-256 al mismo tiempo.
+public interface BlobWriter extends Closeable {
+
+    void append(ByteString data) throws IOException;
+
+    long size();
+
+    StoredBlob commit() throws IOException;
+
+    void abort();
+
+    // Si no se hizo commit, lo escrito se descarta
+    @Override
+    void close();
+}
@@ -0,0 +1,9 @@
+package storage;
+
+// Cuánto se espera al disco antes de confirmar un blob: NONE deja todo al sistema operativo,
+// FILE hace fsync del archivo antes de publicarlo y DIRECTORY además del directorio tras el rename.
+public enum FsyncPolicy {
+    NONE,
+    FILE,
+    DIRECTORY
+}
@@ -0,0 +1,272 @@
+package storage;
+
+import com.google.protobuf.ByteString;
+import config.Settings;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystemException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.HexFormat;
+import java.util.Locale;
+import java.util.UUID;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+// Guarda cada archivo una sola vez en el disco local, nombrado por el SHA-256 de su contenido.
+// Los archivos se reparten en dos niveles de directorios según los primeros caracteres del hash
+// (ab/cd/abcd...), así ningún directorio acumula millones de entradas. La fecha de modificación del
+// archivo es su fecha de último uso.
+public class LocalBlobStore implements BlobStore {
+
+    private static final Pattern KEY_PATTERN = Pattern.compile("[0-9a-f]{2}/[0-9a-f]{2}/[0-9a-f]{64}");
+
+    private static volatile LocalBlobStore defaultStore;
+
+    private final Path root;
+    private final Path tempDir;
+    private final FsyncPolicy fsyncPolicy;
+
+    public LocalBlobStore(Path root) {
+        this(root, FsyncPolicy.NONE);
+    }
+
+    public LocalBlobStore(Path root, FsyncPolicy fsyncPolicy) {
+        this.root = root;
+        this.tempDir = root.resolve("tmp");
+        this.fsyncPolicy = fsyncPolicy;
+    }
+
+    // Raíz en questhub.storage.root; por defecto la carpeta de siempre en Windows y el home en los demás
+    public static LocalBlobStore getDefault() {
+        LocalBlobStore store = defaultStore;
+        if (store == null) {
+            synchronized (LocalBlobStore.class) {
+                store = defaultStore;
+                if (store == null) {
+                    boolean windows = System.getProperty("os.name", "").toLowerCase(Locale.ROOT).startsWith("windows");
+                    String defaultRoot = windows
+                            ? "C:/questhub-uploads/posts/"
+                            : Paths.get(System.getProperty("user.home"), "questhub-uploads", "posts").toString();
+                    FsyncPolicy policy = FsyncPolicy.valueOf(
+                            Settings.get("questhub.storage.fsync", "file").toUpperCase(Locale.ROOT));
+
+                    store = new LocalBlobStore(Paths.get(Settings.get("questhub.storage.root", defaultRoot)), policy);
+                    defaultStore = store;
+                }
+            }
+        }
+        return store;
+    }
+
+    @Override
+    public BlobWriter newWriter() throws IOException {
+        Files.createDirectories(tempDir);
+        return new LocalBlobWriter(this, Files.createTempFile(tempDir, "upload_", ".part"));
+    }
+
+    @Override
+    public StoredBlob store(ByteString data) throws IOException {
+        MessageDigest digest = newDigest();
+        for (ByteBuffer buffer : data.asReadOnlyByteBufferList()) {
+            digest.update(buffer);
+        }
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+
+        // Si el contenido ya existe solo hace falta la referencia
+        if (touch(blobPath(sha256))) {
+            return new StoredBlob(keyOf(sha256), sha256, data.size(), true);
+        }
+
+        try (BlobWriter writer = newWriter()) {
+            writer.append(data);
+            return writer.commit();
+        }
+    }
+
+    @Override
+    public StoredBlob find(String sha256) throws IOException {
+        String normalized = sha256.toLowerCase(Locale.ROOT);
+        if (!isHash(normalized)) return null;
+
+        // Quien busca un blob es para referenciarlo, así que cuenta como uso
+        Path blob = blobPath(normalized);
+        try {
+            if (!touch(blob)) return null;
+            return new StoredBlob(keyOf(normalized), normalized, Files.size(blob), true);
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public SeekableByteChannel open(String key) throws IOException {
+        return FileChannel.open(resolve(key), StandardOpenOption.READ);
+    }
+
+    @Override
+    public Stream<String> list() throws IOException {
+        if (!Files.isDirectory(root)) return Stream.empty();
+        return Files.walk(root, 3)
+                .filter(path -> KEY_PATTERN.matcher(root.relativize(path).toString().replace('\\', '/')).matches())
+                .map(path -> path.getFileName().toString());
+    }
+
+    @Override
+    public Instant lastUsed(String sha256) throws IOException {
+        if (!isHash(sha256)) return null;
+        try {
+            return Files.getLastModifiedTime(blobPath(sha256)).toInstant();
+        } catch (NoSuchFileException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public boolean deleteIfUnusedSince(String sha256, Instant cutoff) throws IOException {
+        Instant lastUsed = lastUsed(sha256);
+        if (lastUsed == null || !lastUsed.isBefore(cutoff)) return false;
+
+        // Se aparta con un rename; desde ahí una deduplicación ya no lo encuentra y guarda su propia copia
+        Path blob = blobPath(sha256);
+        Path reclaimed = blob.resolveSibling(blob.getFileName() + "." + UUID.randomUUID() + ".reclaim");
+        try {
+            Files.move(blob, reclaimed, StandardCopyOption.ATOMIC_MOVE);
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+
+        // Si alguien lo usó entre la revisión y el rename, vuelve a su lugar
+        if (!Files.getLastModifiedTime(reclaimed).toInstant().isBefore(cutoff)) {
+            try {
+                publish(reclaimed, blob);
+            } catch (FileAlreadyExistsException e) {
+                Files.deleteIfExists(reclaimed);
+            }
+            return false;
+        }
+
+        Files.delete(reclaimed);
+        return true;
+    }
+
+    // Los documentos anteriores al store guardan la ruta absoluta del archivo en lugar de la llave
+    Path resolve(String key) {
+        if (KEY_PATTERN.matcher(key).matches()) {
+            return root.resolve(key);
+        }
+        return Paths.get(key);
+    }
+
+    static String keyOf(String sha256) {
+        return sha256.substring(0, 2) + "/" + sha256.substring(2, 4) + "/" + sha256;
+    }
+
+    private Path blobPath(String sha256) {
+        return root.resolve(keyOf(sha256));
+    }
+
+    FsyncPolicy fsyncPolicy() {
+        return fsyncPolicy;
+    }
+
+    // Publica el temporal en su ubicación final; si otro upload ya guardó el mismo contenido, se
+    // descarta. deduplicated refleja lo que pasó en la publicación, no una comprobación previa.
+    StoredBlob commit(Path tempFile, String sha256, long size) throws IOException {
+        Path blob = blobPath(sha256);
+        String key = keyOf(sha256);
+
+        if (touch(blob)) {
+            Files.deleteIfExists(tempFile);
+            return new StoredBlob(key, sha256, size, true);
+        }
+
+        // El temporal pudo abrirse hace mucho; el blob se publica ya con la fecha de uso actual
+        Files.setLastModifiedTime(tempFile, FileTime.from(Instant.now()));
+        Files.createDirectories(blob.getParent());
+        try {
+            publish(tempFile, blob);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(tempFile);
+            return new StoredBlob(key, sha256, size, true);
+        }
+
+        if (fsyncPolicy == FsyncPolicy.DIRECTORY) {
+            syncDirectory(blob.getParent());
+        }
+        return new StoredBlob(key, sha256, size, false);
+    }
+
+    // Un rename con ATOMIC_MOVE reemplaza el destino en silencio (rename(2) en Linux), así que dos
+    // subidas del mismo contenido creerían haberlo escrito las dos. Un hard link nunca reemplaza:
+    // falla con FileAlreadyExistsException y el archivo aparece completo o no aparece.
+    private static void publish(Path tempFile, Path blob) throws IOException {
+        try {
+            Files.createLink(blob, tempFile);
+            Files.delete(tempFile);
+            return;
+        } catch (FileAlreadyExistsException e) {
+            throw e;
+        } catch (UnsupportedOperationException | FileSystemException e) {
+            // Sistema de archivos sin hard links
+        }
+
+        // Se reclama el destino con un archivo creado en exclusiva antes del rename
+        Path claim = blob.resolveSibling(blob.getFileName() + ".claim");
+        try {
+            Files.createFile(claim);
+        } catch (FileAlreadyExistsException e) {
+            if (Files.exists(blob)) throw e;
+            throw new IOException("Blob is being published by another upload: " + blob, e);
+        }
+        try {
+            if (Files.exists(blob)) throw new FileAlreadyExistsException(blob.toString());
+            Files.move(tempFile, blob, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(claim);
+        }
+    }
+
+    // Renueva la fecha de último uso; false si el blob no existe (o lo acaba de apartar el reclaimer)
+    private static boolean touch(Path blob) throws IOException {
+        try {
+            Files.setLastModifiedTime(blob, FileTime.from(Instant.now()));
+            return true;
+        } catch (NoSuchFileException e) {
+            return false;
+        }
+    }
+
+    private static boolean isHash(String sha256) {
+        return sha256.matches("[0-9a-f]{64}");
+    }
+
+    // Persiste la entrada del rename; no todos los sistemas permiten abrir un directorio (Windows no)
+    private static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Sin soporte para fsync de directorios; el archivo ya quedó sincronizado
+        }
+    }
+
+    static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
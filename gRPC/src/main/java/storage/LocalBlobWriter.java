@@ -0,0 +1,72 @@
+package storage;
+
+import com.google.protobuf.ByteString;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+
+// Escribe en un temporal del store; el commit lo mueve a su lugar definitivo.
+class LocalBlobWriter implements BlobWriter {
+
+    private final LocalBlobStore store;
+    private final MessageDigest digest = LocalBlobStore.newDigest();
+    private Path tempFile;
+    private FileChannel channel;
+    private long size;
+
+    LocalBlobWriter(LocalBlobStore store, Path tempFile) throws IOException {
+        this.store = store;
+        this.tempFile = tempFile;
+        this.channel = FileChannel.open(tempFile, StandardOpenOption.WRITE);
+    }
+
+    @Override
+    public void append(ByteString data) throws IOException {
+        // Escribir directamente los buffers del ByteString, sin copiarlos a un byte[]
+        for (ByteBuffer buffer : data.asReadOnlyByteBufferList()) {
+            digest.update(buffer.duplicate());
+            while (buffer.hasRemaining()) {
+                size += channel.write(buffer);
+            }
+        }
+    }
+
+    @Override
+    public long size() {
+        return size;
+    }
+
+    @Override
+    public StoredBlob commit() throws IOException {
+        if (store.fsyncPolicy() != FsyncPolicy.NONE) {
+            channel.force(false);
+        }
+        channel.close();
+        String sha256 = HexFormat.of().formatHex(digest.digest());
+        StoredBlob blob = store.commit(tempFile, sha256, size);
+        tempFile = null;
+        return blob;
+    }
+
+    @Override
+    public void abort() {
+        close();
+    }
+
+    @Override
+    public void close() {
+        try {
+            channel.close();
+            if (tempFile != null) Files.deleteIfExists(tempFile);
+        } catch (IOException e) {
+            System.err.println("Could not delete temp file " + tempFile + ": " + e.getMessage());
+        }
+        tempFile = null;
+    }
+}
@@ -0,0 +1,33 @@
+package storage;
+
+public class StoredBlob {
+    private final String key;
+    private final String sha256;
+    private final long size;
+    private final boolean deduplicated;
+
+    public StoredBlob(String key, String sha256, long size, boolean deduplicated) {
+        this.key = key;
+        this.sha256 = sha256;
+        this.size = size;
+        this.deduplicated = deduplicated;
+    }
+
+    // Llave del blob dentro del store; es lo que se guarda en file_url
+    public String getKey() {
+        return key;
+    }
+
+    public String getSha256() {
+        return sha256;
+    }
+
+    public long getSize() {
+        return size;
+    }
+
+    // true si el contenido ya existía y no se escribió una copia nueva
+    public boolean isDeduplicated() {
+        return deduplicated;
+    }
+}
@@ -0,0 +1,182 @@
+package multimedia;
+
+import com.mongodb.MongoBulkWriteException;
+import com.mongodb.ServerAddress;
+import com.mongodb.bulk.BulkWriteError;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.UpdateOneModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import dataaccess.PostRepository;
+import io.grpc.Status;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class MultimediaWriteBatcherTest {
+
+    private final BulkPostRepository posts = new BulkPostRepository();
+    // Un retraso largo junta en un mismo bulkWrite todo lo que cada prueba empuja
+    private final MultimediaWriteBatcher batcher = new MultimediaWriteBatcher(posts, 128, 200);
+
+    @Test
+    public void pushesToSamePostShareOneUpdate() throws Exception {
+        ObjectId id = posts.addPost();
+
+        CompletableFuture<Void> first = batcher.push(id.toString(), List.of(new Document("filename", "a")));
+        CompletableFuture<Void> second = batcher.push(id.toString(), List.of(new Document("filename", "b")));
+        first.get(5, TimeUnit.SECONDS);
+        second.get(5, TimeUnit.SECONDS);
+
+        assertEquals(1, posts.bulkWrites);
+        assertEquals(List.of(1), posts.modelsPerWrite);
+    }
+
+    @Test
+    public void missingPostFailsWithNotFoundWithoutFailingOthers() throws Exception {
+        ObjectId existing = posts.addPost();
+        ObjectId missing = new ObjectId();
+
+        CompletableFuture<Void> ok = batcher.push(existing.toString(), List.of(new Document("filename", "a")));
+        CompletableFuture<Void> lost = batcher.push(missing.toString(), List.of(new Document("filename", "b")));
+
+        ok.get(5, TimeUnit.SECONDS);
+        assertEquals(Status.Code.NOT_FOUND, Status.fromThrowable(failure(lost)).getCode());
+    }
+
+    @Test
+    public void writeErrorFailsOnlyItsPost() throws Exception {
+        ObjectId healthy = posts.addPost();
+        ObjectId broken = posts.addPost();
+        posts.failing.add(broken);
+
+        CompletableFuture<Void> ok = batcher.push(healthy.toString(), List.of(new Document("filename", "a")));
+        CompletableFuture<Void> rejected = batcher.push(broken.toString(), List.of(new Document("filename", "b")));
+
+        ok.get(5, TimeUnit.SECONDS);
+        Throwable error = failure(rejected);
+        assertTrue(error instanceof IllegalStateException);
+        assertEquals("document too large", error.getMessage());
+    }
+
+    @Test
+    public void invalidPostIdFailsImmediately() {
+        Throwable error = failure(batcher.push("not-an-id", List.of(new Document("filename", "a"))));
+
+        assertTrue(error instanceof IllegalArgumentException);
+        assertEquals(0, posts.bulkWrites);
+    }
+
+    private static Throwable failure(CompletableFuture<Void> future) {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+        } catch (ExecutionException e) {
+            return e.getCause();
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+        fail("Expected the push to fail");
+        return null;
+    }
+
+    // Solo lo que usa el batcher: bulkWrite de $push por _id y la consulta de ids existentes
+    private static class BulkPostRepository implements PostRepository {
+        final Set<ObjectId> existing = ConcurrentHashMap.newKeySet();
+        final Set<ObjectId> failing = ConcurrentHashMap.newKeySet();
+        final List<Integer> modelsPerWrite = new ArrayList<>();
+        volatile int bulkWrites;
+
+        ObjectId addPost() {
+            ObjectId id = new ObjectId();
+            existing.add(id);
+            return id;
+        }
+
+        @Override
+        public synchronized CompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> models,
+                                                                         BulkWriteOptions options) {
+            bulkWrites++;
+            modelsPerWrite.add(models.size());
+
+            int matched = 0;
+            List<BulkWriteError> errors = new ArrayList<>();
+            for (int i = 0; i < models.size(); i++) {
+                ObjectId id = idOf(((UpdateOneModel<Document>) models.get(i)).getFilter());
+                if (failing.contains(id)) {
+                    errors.add(new BulkWriteError(10334, "document too large", new BsonDocument(), i));
+                } else if (existing.contains(id)) {
+                    matched++;
+                }
+            }
+
+            BulkWriteResult result = BulkWriteResult.acknowledged(0, matched, 0, matched, List.of(), List.of());
+            if (!errors.isEmpty()) {
+                return CompletableFuture.failedFuture(
+                        new MongoBulkWriteException(result, errors, null, new ServerAddress(), Set.of()));
+            }
+            return CompletableFuture.completedFuture(result);
+        }
+
+        @Override
+        public CompletableFuture<Void> find(Bson filter, Bson projection, Bson sort, int limit, int batchSize,
+                                            Predicate<Document> consumer) {
+            for (BsonValue value : filter.toBsonDocument().getDocument("_id").getArray("$in")) {
+                ObjectId id = value.asObjectId().getValue();
+                if (existing.contains(id) && !consumer.test(new Document("_id", id))) break;
+            }
+            return CompletableFuture.completedFuture(null);
+        }
+
+        private static ObjectId idOf(Bson filter) {
+            return filter.toBsonDocument().getObjectId("_id").getValue();
+        }
+
+        @Override
+        public CompletableFuture<Document> findById(ObjectId id, Bson projection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> insert(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Document> findOneAndUpdate(ObjectId id, Bson update, Bson projection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Long> updateOne(Bson filter, Bson update, UpdateOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Document> findOneAndDelete(ObjectId id, Bson projection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> createIndexes(List<IndexModel> indexes) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
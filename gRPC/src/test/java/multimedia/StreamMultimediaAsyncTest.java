@@ -0,0 +1,198 @@
+package multimedia;
+
+import com.google.protobuf.ByteString;
+import com.mongodb.bulk.BulkWriteResult;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.IndexModel;
+import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
+import com.proto.multimedia.GetMultimediaRequest;
+import com.proto.multimedia.GetMultimediaResponse;
+import com.proto.multimedia.MultimediaChunk;
+import com.proto.multimedia.MultimediaServiceGrpc;
+import dataaccess.PostRepository;
+import io.grpc.ManagedChannel;
+import io.grpc.Server;
+import io.grpc.StatusRuntimeException;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.bson.Document;
+import org.bson.conversions.Bson;
+import org.bson.types.ObjectId;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import storage.LocalBlobStore;
+import storage.StoredBlob;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+// Con el repositorio reactivo la consulta termina en otro hilo, después de que el handler de la
+// llamada ya regresó. Este repositorio reproduce eso completando cada future 100 ms más tarde.
+public class StreamMultimediaAsyncTest {
+
+    private Path storageRoot;
+    private Server server;
+    private ManagedChannel channel;
+    private MultimediaServiceGrpc.MultimediaServiceBlockingStub stub;
+    private String postId;
+    private byte[] content;
+
+    @Before
+    public void setUp() throws Exception {
+        storageRoot = Files.createTempDirectory("questhub-test");
+        LocalBlobStore blobStore = new LocalBlobStore(storageRoot);
+
+        content = new byte[300 * 1024];
+        new Random(1).nextBytes(content);
+        StoredBlob blob = blobStore.store(ByteString.copyFrom(content));
+
+        ObjectId id = new ObjectId();
+        postId = id.toString();
+        DelayedPostRepository posts = new DelayedPostRepository();
+        posts.documents.put(id, new Document("_id", id).append("multimedia", List.of(
+                new Document("filename", "item.bin")
+                        .append("original_filename", "item.bin")
+                        .append("content_type", "application/octet-stream")
+                        .append("file_url", blob.getKey())
+                        .append("sha256", blob.getSha256())
+                        .append("size", blob.getSize()))));
+
+        String name = InProcessServerBuilder.generateName();
+        server = InProcessServerBuilder.forName(name)
+                .addService(new MultimediaServerImplementation(posts, blobStore))
+                .build()
+                .start();
+        channel = InProcessChannelBuilder.forName(name).build();
+        stub = MultimediaServiceGrpc.newBlockingStub(channel).withDeadlineAfter(10, TimeUnit.SECONDS);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        channel.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        server.shutdownNow().awaitTermination(5, TimeUnit.SECONDS);
+        try (Stream<Path> files = Files.walk(storageRoot)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void streamsWhenLookupCompletesAfterHandlerReturns() throws Exception {
+        Iterator<MultimediaChunk> chunks = stub.streamMultimedia(GetMultimediaRequest.newBuilder().setPostId(postId).build());
+
+        ByteArrayOutputStream received = new ByteArrayOutputStream();
+        int metadataChunks = 0;
+        while (chunks.hasNext()) {
+            MultimediaChunk chunk = chunks.next();
+            if (chunk.hasMetadata()) {
+                metadataChunks++;
+                assertEquals("item.bin", chunk.getMetadata().getFilename());
+            } else {
+                chunk.getData().writeTo(received);
+            }
+        }
+
+        assertEquals(1, metadataChunks);
+        assertTrue(Arrays.equals(content, received.toByteArray()));
+    }
+
+    @Test
+    public void streamReportsMissingPost() {
+        Iterator<MultimediaChunk> chunks = stub.streamMultimedia(
+                GetMultimediaRequest.newBuilder().setPostId(new ObjectId().toString()).build());
+        try {
+            chunks.hasNext();
+            fail("Expected an error for a missing post");
+        } catch (StatusRuntimeException e) {
+            // El error de la consulta llega al cliente en lugar de dejar la llamada colgada
+        }
+    }
+
+    @Test
+    public void streamFlagsMissingBlob() throws Exception {
+        try (Stream<Path> files = Files.walk(storageRoot)) {
+            files.filter(Files::isRegularFile).forEach(path -> path.toFile().delete());
+        }
+
+        Iterator<MultimediaChunk> chunks = stub.streamMultimedia(GetMultimediaRequest.newBuilder().setPostId(postId).build());
+
+        MultimediaChunk metadata = chunks.next();
+        assertTrue(metadata.getMetadata().getMissing());
+        // Sin datos después de los metadatos
+        assertFalse(chunks.hasNext());
+    }
+
+    @Test
+    public void getMultimediaReturnsDataWhenLookupIsDelayed() {
+        GetMultimediaResponse response = stub.getMultimedia(GetMultimediaRequest.newBuilder().setPostId(postId).build());
+
+        assertEquals(1, response.getMultimediaItemsCount());
+        assertEquals(ByteString.copyFrom(content), response.getMultimediaItems(0).getData());
+    }
+
+    // Solo lecturas por id; cada future se completa en otro hilo después de un retraso
+    private static class DelayedPostRepository implements PostRepository {
+        final Map<ObjectId, Document> documents = new ConcurrentHashMap<>();
+        private final Executor delayed = CompletableFuture.delayedExecutor(100, TimeUnit.MILLISECONDS);
+
+        @Override
+        public CompletableFuture<Document> findById(ObjectId id, Bson projection) {
+            return CompletableFuture.supplyAsync(() -> documents.get(id), delayed);
+        }
+
+        @Override
+        public CompletableFuture<Void> find(Bson filter, Bson projection, Bson sort, int limit, int batchSize,
+                                            Predicate<Document> consumer) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> insert(Document document) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Document> findOneAndUpdate(ObjectId id, Bson update, Bson projection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Long> updateOne(Bson filter, Bson update, UpdateOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Document> findOneAndDelete(ObjectId id, Bson projection) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<BulkWriteResult> bulkWrite(List<? extends WriteModel<Document>> models, BulkWriteOptions options) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public CompletableFuture<Void> createIndexes(List<IndexModel> indexes) {
+            throw new UnsupportedOperationException();
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package multimedia;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class UploadAdmissionTest {
+
+    @Test
+    public void limitsUploadsPerClient() {
+        UploadAdmission admission = new UploadAdmission(10, 2, 1000, 1000, 100);
+
+        assertNotNull(admission.tryAdmit("a"));
+        assertNotNull(admission.tryAdmit("a"));
+        assertNull(admission.tryAdmit("a"));
+        // Otro cliente no se ve afectado
+        assertNotNull(admission.tryAdmit("b"));
+    }
+
+    @Test
+    public void limitsUploadsAcrossClients() {
+        UploadAdmission admission = new UploadAdmission(2, 2, 1000, 1000, 100);
+
+        assertNotNull(admission.tryAdmit("a"));
+        assertNotNull(admission.tryAdmit("b"));
+        assertNull(admission.tryAdmit("c"));
+    }
+
+    @Test
+    public void closingTicketFreesItsSlotOnce() {
+        UploadAdmission admission = new UploadAdmission(1, 1, 1000, 1000, 100);
+
+        UploadAdmission.Ticket ticket = admission.tryAdmit("a");
+        ticket.close();
+        ticket.close();
+
+        assertNotNull(admission.tryAdmit("a"));
+        // El segundo close no liberó un lugar de más
+        assertNull(admission.tryAdmit("b"));
+    }
+
+    @Test
+    public void limitsBufferedBytesPerClientAndInTotal() {
+        UploadAdmission admission = new UploadAdmission(10, 10, 150, 100, 100);
+        UploadAdmission.Ticket a = admission.tryAdmit("a");
+        UploadAdmission.Ticket b = admission.tryAdmit("b");
+
+        assertTrue(a.reserve(80));
+        assertFalse(a.reserve(30));
+        assertTrue(b.reserve(70));
+        assertFalse(b.reserve(10));
+    }
+
+    @Test
+    public void releasedBytesCanBeReservedAgain() {
+        UploadAdmission admission = new UploadAdmission(10, 10, 100, 100, 100);
+        UploadAdmission.Ticket ticket = admission.tryAdmit("a");
+
+        assertTrue(ticket.reserve(100));
+        assertFalse(ticket.reserve(1));
+        ticket.release(60);
+        assertTrue(ticket.reserve(60));
+    }
+}
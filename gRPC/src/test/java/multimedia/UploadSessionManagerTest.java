@@ -0,0 +1,115 @@
+package multimedia;
+
+import com.google.protobuf.ByteString;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import storage.LocalBlobStore;
+import storage.StoredBlob;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class UploadSessionManagerTest {
+
+    private Path storageRoot;
+    private LocalBlobStore blobStore;
+
+    @Before
+    public void setUp() throws Exception {
+        storageRoot = Files.createTempDirectory("questhub-sessions");
+        blobStore = new LocalBlobStore(storageRoot);
+    }
+
+    @After
+    public void tearDown() throws Exception {
+        try (Stream<Path> files = Files.walk(storageRoot)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+
+    @Test
+    public void committedOffsetResumesAfterAppendedChunks() throws Exception {
+        UploadSessionManager sessions = new UploadSessionManager(blobStore);
+        UploadSessionManager.Session session = sessions.start("post", "a.bin", "application/octet-stream", 300);
+
+        session.writer.append(ByteString.copyFrom(new byte[100]));
+        session.writer.append(ByteString.copyFrom(new byte[50]));
+
+        // Una conexión nueva encuentra la misma sesión y sigue desde lo ya escrito
+        UploadSessionManager.Session resumed = sessions.get(session.uploadId);
+        assertSame(session, resumed);
+        assertEquals(150, resumed.committedOffset());
+    }
+
+    @Test
+    public void unknownUploadIdHasNoSession() {
+        assertNull(new UploadSessionManager(blobStore).get("missing"));
+    }
+
+    @Test
+    public void idleSessionExpiresAndDiscardsPartialFile() throws Exception {
+        UploadSessionManager sessions = new UploadSessionManager(blobStore, 0);
+        UploadSessionManager.Session session = sessions.start("post", "a.bin", "application/octet-stream", 10);
+        session.writer.append(ByteString.copyFrom(new byte[10]));
+
+        sessions.expireIdleSessions();
+
+        assertNull(sessions.get(session.uploadId));
+        assertEquals(0, partialFiles());
+    }
+
+    @Test
+    public void activeSessionSurvivesExpiry() throws Exception {
+        UploadSessionManager sessions = new UploadSessionManager(blobStore, TimeUnit.HOURS.toMillis(1));
+        UploadSessionManager.Session session = sessions.start("post", "a.bin", "application/octet-stream", 10);
+
+        sessions.expireIdleSessions();
+
+        assertNotNull(sessions.get(session.uploadId));
+        assertEquals(1, partialFiles());
+    }
+
+    @Test
+    public void proofMatchesOnlyTheChallengedRange() throws Exception {
+        byte[] content = new byte[200 * 1024];
+        new Random(1).nextBytes(content);
+        StoredBlob existing = blobStore.store(ByteString.copyFrom(content));
+
+        UploadSessionManager.Session session = new UploadSessionManager(blobStore)
+                .startWithProof("post", "a.bin", "application/octet-stream", existing);
+        UploadSessionManager.ProofChallenge challenge = session.challenge;
+        assertTrue(challenge.offset + challenge.length <= content.length);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        digest.update(challenge.nonce);
+        digest.update(content, (int) challenge.offset, (int) challenge.length);
+        String proof = HexFormat.of().formatHex(digest.digest());
+
+        assertTrue(challenge.verify(blobStore, proof));
+        assertTrue(challenge.verify(blobStore, proof.toUpperCase()));
+        assertFalse(challenge.verify(blobStore, existing.getSha256()));
+        assertFalse(challenge.verify(blobStore, "not hex"));
+    }
+
+    private long partialFiles() throws Exception {
+        Path tempDir = storageRoot.resolve("tmp");
+        if (!Files.isDirectory(tempDir)) return 0;
+        try (Stream<Path> files = Files.list(tempDir)) {
+            return files.count();
+        }
+    }
+}
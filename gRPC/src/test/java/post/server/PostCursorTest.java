@@ -0,0 +1,55 @@
+package post.server;
+
+import org.bson.Document;
+import org.bson.types.ObjectId;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Base64;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PostCursorTest {
+
+    @Test
+    public void encodeDecodeRoundTrip() {
+        ObjectId id = new ObjectId();
+        PostCursor cursor = PostCursor.of(new Document("_id", id).append("created_at", "2026-01-02T03:04:05.060Z"));
+
+        PostCursor decoded = PostCursor.decode(cursor.encode());
+
+        assertEquals("2026-01-02T03:04:05.060Z", decoded.createdAt);
+        assertEquals(id, decoded.id);
+    }
+
+    @Test
+    public void tokenIsUrlSafe() {
+        String token = PostCursor.of(new Document("_id", new ObjectId()).append("created_at", "2026-01-02T03:04:05.060Z")).encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsMalformedToken() {
+        PostCursor.decode("not a token");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsTokenWithInvalidId() {
+        String value = "2026-01-02T03:04:05.060Z|not-an-id";
+        PostCursor.decode(Base64.getUrlEncoder().encodeToString(value.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void createdAtHasFixedWidth() {
+        String whole = PostCursor.createdAt(Instant.parse("2026-01-02T03:04:05Z"));
+        String fraction = PostCursor.createdAt(Instant.parse("2026-01-02T03:04:05.120Z"));
+
+        assertEquals("2026-01-02T03:04:05.000Z", whole);
+        assertEquals(whole.length(), fraction.length());
+        // Como texto se ordenan igual que como instantes
+        assertTrue(whole.compareTo(fraction) < 0);
+    }
+}